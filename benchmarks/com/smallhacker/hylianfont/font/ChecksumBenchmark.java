@@ -0,0 +1,79 @@
+package com.smallhacker.hylianfont.font;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecksumBenchmark {
+    private static final long SEED = 0x5F1A_2018L;
+    private static final int EDIT_LENGTH = 20;
+    private static final int EDIT_POSITION = Font.START_OF_TILE_DATA + Tile.TILE_COUNT / 2 * EDIT_LENGTH;
+
+    private ByteBuffer rom;
+    private byte[][] edits;
+    private int checksum;
+    private int edit;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rom = ByteBuffer.wrap(Roms.synthetic(SEED));
+        checksum = RomChecksum.read(rom);
+
+        Random random = new Random(SEED);
+        edits = new byte[2][EDIT_LENGTH];
+        for (byte[] bytes : edits) {
+            random.nextBytes(bytes);
+        }
+    }
+
+    @Benchmark
+    public int incremental() {
+        byte[] after = nextEdit();
+        int delta = RomChecksum.delta(rom, EDIT_POSITION, after, 0, after.length);
+        write(after);
+        return commit(RomChecksum.update(checksum, delta));
+    }
+
+    @Benchmark
+    public int full() {
+        write(nextEdit());
+        return commit(RomChecksum.compute(rom));
+    }
+
+    private byte[] nextEdit() {
+        edit ^= 1;
+        return edits[edit];
+    }
+
+    private void write(byte[] after) {
+        ByteBuffer target = rom.duplicate();
+        target.position(EDIT_POSITION);
+        target.put(after);
+    }
+
+    private int commit(int checksum) {
+        ByteBuffer target = rom.duplicate();
+        target.position(RomChecksum.COMPLEMENT_OFFSET);
+        target.put(RomChecksum.header(checksum));
+        this.checksum = checksum;
+        return checksum;
+    }
+}
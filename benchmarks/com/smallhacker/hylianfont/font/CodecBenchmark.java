@@ -0,0 +1,83 @@
+package com.smallhacker.hylianfont.font;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    private static final long SEED = 0x5F1A_2018L;
+
+    private byte[] rom;
+    private Path romFile;
+    private Font font;
+    private Tile tile;
+    private byte[] packed;
+    private byte[] pixels;
+    private int edits;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        rom = Roms.synthetic(SEED);
+        romFile = Roms.write(rom);
+        font = Font.load(romFile);
+        tile = font.getTile(Tile.TILE_COUNT / 2);
+        packed = tile.pack();
+        pixels = ReferenceCodec.unpack(packed);
+    }
+
+    @Benchmark
+    public List<Tile> load() {
+        return Tile.load(rom, Font.START_OF_TILE_DATA, Font.START_OF_TILE_BITMASK);
+    }
+
+    @Benchmark
+    public Tile.Output encode() {
+        return tile.encode();
+    }
+
+    @Benchmark
+    public byte[] pack() {
+        return tile.pack();
+    }
+
+    @Benchmark
+    public byte[] referencePack() {
+        return ReferenceCodec.pack(pixels);
+    }
+
+    @Benchmark
+    public long[] unpack() {
+        return Tile.unpack(packed);
+    }
+
+    @Benchmark
+    public byte[] referenceUnpack() {
+        return ReferenceCodec.unpack(packed);
+    }
+
+    @Benchmark
+    public Font save() {
+        tile.set(5, 8, (byte) (++edits & 3));
+        font.save(romFile);
+        return font;
+    }
+}
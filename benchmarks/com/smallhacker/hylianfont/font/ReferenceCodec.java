@@ -0,0 +1,92 @@
+package com.smallhacker.hylianfont.font;
+
+// The original bit-by-bit codec over one byte per pixel, kept as the baseline for Tile's table-driven pack/unpack
+final class ReferenceCodec {
+    private static final int WIDTH = 11;
+    private static final int HEIGHT = 16;
+
+    private ReferenceCodec() {
+    }
+
+    static byte[] unpack(byte[] packed) {
+        final int LENGTH = WIDTH * HEIGHT / 8;
+
+        byte[] unpacked = new byte[WIDTH * HEIGHT];
+        for (int i = 0; i < LENGTH; i++) {
+            byte low = packed[i * 2];
+            byte high = packed[i * 2 + 1];
+            for (int bit = 0; bit < 8; bit++) {
+                byte pixel = (byte) (((low >> 7) & 1) | ((high >> 6) & 2));
+
+                int index = toCoords(i, bit);
+
+                unpacked[index] = pixel;
+
+                low <<= 1;
+                high <<= 1;
+            }
+        }
+        return unpacked;
+    }
+
+    static byte[] pack(byte[] pixels) {
+        byte[] packed = new byte[44];
+        for (byte i = 0; i < 44; i += 2) {
+            byte low = 0;
+            byte high = 0;
+
+            byte x;
+            byte y;
+
+            byte j = (byte) (i / 2);
+            if (j < 11) {
+                if (j < 8) {
+                    x = 0;
+                    y = j;
+                } else {
+                    x = j;
+                    y = 0;
+                }
+            } else {
+                if (j < 19) {
+                    x = 0;
+                    y = (byte) (j - 3);
+                } else {
+                    x = (byte) (j - 11);
+                    y = 8;
+                }
+            }
+
+            byte dx = (byte) (x == 0 ? 1 : 0);
+            byte dy = (byte) (1 - dx);
+
+            for (int bit = 0; bit < 8; bit++) {
+                low <<= 1;
+                high <<= 1;
+                int val = pixels[Tile.coordsToIndex(x, y)];
+                low |= (byte) (val & 1);
+                val >>= 1;
+                high |= (byte) (val & 1);
+
+                x += dx;
+                y += dy;
+            }
+            packed[i] = low;
+            packed[i + 1] = high;
+        }
+
+        return packed;
+    }
+
+    private static int toCoords(int row, int bit) {
+        if (row < 8) {
+            return Tile.coordsToIndex(bit, row);
+        } else if (row < 11) {
+            return Tile.coordsToIndex(row, bit);
+        } else if (row < 19) {
+            return Tile.coordsToIndex(bit, row - 3);
+        } else {
+            return Tile.coordsToIndex(row - 19 + 8, bit + 8);
+        }
+    }
+}
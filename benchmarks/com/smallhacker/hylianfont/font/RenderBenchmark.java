@@ -0,0 +1,69 @@
+package com.smallhacker.hylianfont.font;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    private static final long SEED = 0x5F1A_2018L;
+
+    @Param({"STANDARD", "MASKED", "NARROW"})
+    private Rendering.Mode mode;
+
+    @Param({"1", "2", "16"})
+    private int scale;
+
+    private Tile tile;
+    private Rendering rendering;
+    private IndexedRaster raster;
+    private Framebuffer framebuffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Tile> tiles = Tile.load(Roms.synthetic(SEED), Font.START_OF_TILE_DATA, Font.START_OF_TILE_BITMASK);
+        tile = tiles.get(Tile.TILE_COUNT / 2);
+        rendering = new Rendering(scale, mode, new Palette("Text Boxes", 0x008888, 0x000073, 0xFFFFFF, 0xC60000));
+        raster = new IndexedRaster(rendering.getScaledWidth(), rendering.getScaledHeight());
+        framebuffer = new Framebuffer(rendering.getScaledWidth(), rendering.getScaledHeight());
+    }
+
+    @Benchmark
+    public int[] rasterizeArgb() {
+        return tile.rasterizeArgb(rendering);
+    }
+
+    @Benchmark
+    public byte[] rasterizeIndices() {
+        return tile.rasterizeIndices(rendering);
+    }
+
+    @Benchmark
+    public IndexedRaster renderIndexed() {
+        tile.render(raster, 0, 0, rendering);
+        return raster;
+    }
+
+    @Benchmark
+    public Framebuffer renderFramebuffer() {
+        tile.render(framebuffer, 0, 0, rendering);
+        return framebuffer;
+    }
+}
@@ -0,0 +1,57 @@
+package com.smallhacker.hylianfont.font;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+final class Roms {
+    static final int ROM_SIZE = 0x80000;
+
+    private static final int BITMASK_BITS = 40;
+    private static final int BITS_PER_TILE = 20;
+
+    private Roms() {
+    }
+
+    static byte[] synthetic(long seed) {
+        Random random = new Random(seed);
+        byte[] rom = new byte[ROM_SIZE];
+
+        int tilePointer = Font.START_OF_TILE_DATA;
+        int bitmaskPointer = Font.START_OF_TILE_BITMASK;
+
+        for (int tile = 0; tile < Tile.TILE_COUNT; tile++) {
+            long bitmask = 0;
+            for (int set = 0; set < BITS_PER_TILE; ) {
+                long bit = 1L << random.nextInt(BITMASK_BITS);
+                if ((bitmask & bit) == 0) {
+                    bitmask |= bit;
+                    set++;
+                }
+            }
+
+            for (int i = 0; i < 5; i++) {
+                rom[bitmaskPointer++] = (byte) (bitmask >> (32 - i * 8));
+            }
+
+            for (int i = 0; i < BITS_PER_TILE; i++) {
+                rom[tilePointer++] = (byte) (random.nextInt(255) + 1);
+            }
+        }
+
+        byte[] blank = RomChecksum.header(0);
+        System.arraycopy(blank, 0, rom, RomChecksum.COMPLEMENT_OFFSET, blank.length);
+        byte[] header = RomChecksum.header(RomChecksum.compute(ByteBuffer.wrap(rom)));
+        System.arraycopy(header, 0, rom, RomChecksum.COMPLEMENT_OFFSET, header.length);
+        return rom;
+    }
+
+    static Path write(byte[] rom) throws IOException {
+        Path file = Files.createTempFile("hylian-font-bench", ".sfc");
+        file.toFile().deleteOnExit();
+        Files.write(file, rom);
+        return file;
+    }
+}
@@ -0,0 +1,38 @@
+package com.smallhacker.gui;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public final class FrameBatcher<T> {
+    private final Consumer<Set<T>> flush;
+    private final Set<T> pending = new LinkedHashSet<>();
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            flush();
+        }
+    };
+
+    public FrameBatcher(Consumer<Set<T>> flush) {
+        this.flush = flush;
+    }
+
+    public void add(T item) {
+        if (pending.isEmpty()) {
+            timer.start();
+        }
+        pending.add(item);
+    }
+
+    public void flush() {
+        timer.stop();
+        if (!pending.isEmpty()) {
+            Set<T> batch = new LinkedHashSet<>(pending);
+            pending.clear();
+            flush.accept(batch);
+        }
+    }
+}
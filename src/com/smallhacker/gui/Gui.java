@@ -35,7 +35,11 @@ public abstract class Gui {
     }
 
     protected final GuiCanvas canvas(int width, int height) {
-        return new GuiCanvas(pane, width, height);
+        return canvas(width, height, 1);
+    }
+
+    protected final GuiCanvas canvas(int width, int height, int zoom) {
+        return new GuiCanvas(pane, width, height, zoom);
     }
 
     protected final Button button() {
@@ -59,7 +63,11 @@ public abstract class Gui {
     }
 
     protected FilePicker fileChooser(Consumer<Path> callback, String title, FileChooser.ExtensionFilter... extensions) {
-        return new FilePicker(callback, title, extensions);
+        return new FilePicker(callback, title, false, extensions);
+    }
+
+    protected FilePicker saveFileChooser(Consumer<Path> callback, String title, FileChooser.ExtensionFilter... extensions) {
+        return new FilePicker(callback, title, true, extensions);
     }
 
 
@@ -86,13 +94,15 @@ public abstract class Gui {
     protected final class FilePicker implements Runnable {
         private final FileChooser fileChooser;
         private final Consumer<Path> callback;
+        private final boolean save;
         private File initial;
 
-        private FilePicker(Consumer<Path> callback, String title, FileChooser.ExtensionFilter... extensions) {
+        private FilePicker(Consumer<Path> callback, String title, boolean save, FileChooser.ExtensionFilter... extensions) {
             this.fileChooser = new FileChooser();
             fileChooser.setTitle(title);
             fileChooser.getExtensionFilters().addAll(extensions);
             this.callback = callback;
+            this.save = save;
         }
 
 
@@ -101,7 +111,7 @@ public abstract class Gui {
             if (initial != null) {
                 fileChooser.setInitialDirectory(initial);
             }
-            File f = fileChooser.showOpenDialog(stage());
+            File f = save ? fileChooser.showSaveDialog(stage()) : fileChooser.showOpenDialog(stage());
             if (f != null) {
                 Path file = f.toPath();
                 callback.accept(file);
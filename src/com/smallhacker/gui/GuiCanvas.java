@@ -4,10 +4,16 @@ import javafx.event.EventHandler;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Pane;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Rectangle;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import static com.smallhacker.gui.Handlers.handlers;
@@ -15,19 +21,39 @@ import static com.smallhacker.gui.Handlers.handlers;
 public final class GuiCanvas {
     private final int width;
     private final int height;
+    private final int zoom;
     private final ImageView view;
+    private final Pane layers;
+    private final List<Rectangle> guides = new ArrayList<>();
+    private final RenderScheduler scheduler = new RenderScheduler();
+
+    private WritableImage front;
+    private WritableImage back;
+    private int[] blank;
+    private int allocationsAvoided;
 
     private final Handlers<MouseEvent> onMousePressed = handlers();
     private final Handlers<MouseEvent> onMouseReleased = handlers();
     private final Handlers<MouseEvent> onMouseDragged = handlers();
 
-    GuiCanvas(Pane root, int width, int height) {
+    GuiCanvas(Pane root, int width, int height, int zoom) {
+        if (zoom < 1 || width % zoom != 0 || height % zoom != 0) {
+            throw new IllegalArgumentException("Canvas size must be a multiple of the zoom level.");
+        }
+
         this.width = width;
         this.height = height;
+        this.zoom = zoom;
 
         this.view = new ImageView();
         view.resize(width, height);
-        root.getChildren().add(view);
+        view.setFitWidth(width);
+        view.setFitHeight(height);
+        view.setSmooth(false);
+
+        this.layers = new Pane();
+        layers.getChildren().add(view);
+        root.getChildren().add(layers);
 
         view.setOnMousePressed(capped(onMousePressed));
         view.setOnMouseReleased(capped(onMouseReleased));
@@ -61,16 +87,69 @@ public final class GuiCanvas {
         };
     }
 
+    public int getZoom() {
+        return zoom;
+    }
+
+    public void setGuides(Paint paint, int... xs) {
+        layers.getChildren().removeAll(guides);
+        guides.clear();
+        for (int x : xs) {
+            Rectangle guide = new Rectangle(x, 0, 1, height);
+            guide.setFill(paint);
+            guide.setMouseTransparent(true);
+            guides.add(guide);
+        }
+        layers.getChildren().addAll(guides);
+    }
+
     public void setImage(Image image) {
         view.setImage(image);
     }
 
     public void render(Consumer<WritableImage> renderer) {
-        WritableImage image = new WritableImage(width, height);
+        WritableImage image = back;
+        if (image == null) {
+            image = new WritableImage(width / zoom, height / zoom);
+        } else {
+            clear(image);
+            allocationsAvoided++;
+        }
         renderer.accept(image);
+        back = front;
+        front = image;
         setImage(image);
     }
 
+    public <T> void renderLater(RenderScheduler.Job<T> job, BiConsumer<WritableImage, T> presenter) {
+        scheduler.submit(job, frame -> render(image -> presenter.accept(image, frame)));
+    }
+
+    public void cancelRender() {
+        scheduler.cancel();
+    }
+
+    public void update(Consumer<WritableImage> renderer) {
+        if (front == null) {
+            render(renderer);
+        } else {
+            renderer.accept(front);
+        }
+    }
+
+    public int getAllocationsAvoided() {
+        return allocationsAvoided;
+    }
+
+    private void clear(WritableImage image) {
+        int imageWidth = (int) image.getWidth();
+        int imageHeight = (int) image.getHeight();
+        if (blank == null) {
+            blank = new int[imageWidth * imageHeight];
+        }
+        image.getPixelWriter().setPixels(0, 0, imageWidth, imageHeight, PixelFormat.getIntArgbInstance(), blank, 0, imageWidth);
+    }
+
     public void onMousePressed(Consumer<MouseEvent> event) {
         onMousePressed.add(event);
     }
@@ -0,0 +1,111 @@
+package com.smallhacker.gui;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+public final class RenderScheduler {
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "Render worker");
+                thread.setDaemon(true);
+                return thread;
+            }
+    );
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicReference<Request<?>> pending = new AtomicReference<>();
+    private final AtomicReference<Runnable> ready = new AtomicReference<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public <T> void submit(Job<T> job, Consumer<T> publisher) {
+        long id = generation.incrementAndGet();
+        pending.set(new Request<>(id, job, publisher));
+        startWorker();
+    }
+
+    public void cancel() {
+        generation.incrementAndGet();
+        pending.set(null);
+    }
+
+    private void startWorker() {
+        if (running.compareAndSet(false, true)) {
+            WORKERS.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            Request<?> request;
+            while ((request = pending.getAndSet(null)) != null) {
+                request.run();
+            }
+        } finally {
+            running.set(false);
+        }
+
+        if (pending.get() != null) {
+            startWorker();
+        }
+    }
+
+    private void publish(Runnable publication) {
+        if (ready.getAndSet(publication) == null) {
+            Platform.runLater(() -> {
+                Runnable latest = ready.getAndSet(null);
+                if (latest != null) {
+                    latest.run();
+                }
+            });
+        }
+    }
+
+    @FunctionalInterface
+    public interface Job<T> {
+        T render(BooleanSupplier superseded);
+    }
+
+    private final class Request<T> {
+        private final long id;
+        private final Job<T> job;
+        private final Consumer<T> publisher;
+
+        private Request(long id, Job<T> job, Consumer<T> publisher) {
+            this.id = id;
+            this.job = job;
+            this.publisher = publisher;
+        }
+
+        private boolean isSuperseded() {
+            return generation.get() != id;
+        }
+
+        private void run() {
+            T frame;
+            try {
+                frame = job.render(this::isSuperseded);
+            } catch (RuntimeException e) {
+                publish(() -> {
+                    throw e;
+                });
+                return;
+            }
+
+            if (frame != null && !isSuperseded()) {
+                publish(() -> {
+                    if (!isSuperseded()) {
+                        publisher.accept(frame);
+                    }
+                });
+            }
+        }
+    }
+}
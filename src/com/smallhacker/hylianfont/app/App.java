@@ -2,37 +2,50 @@ package com.smallhacker.hylianfont.app;
 
 import com.smallhacker.gui.Gui;
 import com.smallhacker.hylianfont.font.Font;
+import com.smallhacker.hylianfont.font.FontSnapshot;
+import com.smallhacker.hylianfont.font.FontWatcher;
+import com.smallhacker.hylianfont.font.MessageException;
 import com.smallhacker.hylianfont.font.Palette;
+import com.smallhacker.hylianfont.font.Palettes;
 import com.smallhacker.hylianfont.font.Rendering;
+import com.smallhacker.hylianfont.font.SheetPng;
 import com.smallhacker.hylianfont.font.Tile;
+import com.smallhacker.hylianfont.font.TileSheet;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.control.Alert;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 public final class App extends Application {
     public static void main(String[] args) {
         launch(args);
     }
 
-    private static final List<Palette> PALETTES = Arrays.asList(
-            new Palette("Text Boxes", 0x008888, 0x000073, 0xFFFFFF, 0xC60000),
-            new Palette("Ending: Green", 0x008888, 0x000000, 0x29FF5A, 0x000000),
-            new Palette("Ending: Yellow", 0x008888, 0x000000, 0xFFC639, 0x000000),
-            new Palette("Ending: Red", 0x008888, 0x000073, 0xF75239, 0x000000),
-            new Palette("Ending: White", 0x008888, 0x000000, 0xFFFFFF, 0x000000),
-            new Palette("File Select", 0x000000, 0x000000, 0xFFFFFF, 0x000000)
+    private static final List<Palette> PALETTES = Palettes.ALL;
 
+    private static final ExecutorService IO = Executors.newSingleThreadExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "Font I/O");
+                thread.setDaemon(true);
+                return thread;
+            }
     );
 
     private Path currentFile;
     private Font currentFont;
     private Tile currentTile;
+    private FontTask<?> currentTask;
+    private FontWatcher currentWatcher;
 
     @Override
     public void start(Stage primaryStage) {
@@ -41,29 +54,87 @@ public final class App extends Application {
 
         Stage tileStage = new Stage();
         tileStage.initOwner(primaryStage);
-        TileGui tileGui = new TileGui(tileStage, new Rendering(16, defaultViewMode.getTileMode(), palette));
-        SelectionGui selectionGui = new SelectionGui(primaryStage, PALETTES, new Rendering(2, defaultViewMode.getSelectionMode(), palette));
+        TileGui tileGui = new TileGui(tileStage, rendering(16, defaultViewMode.getTileMode(), palette));
+        SelectionGui selectionGui = new SelectionGui(primaryStage, PALETTES, rendering(2, defaultViewMode.getSelectionMode(), palette));
 
         selectionGui.onLoad(path -> {
-            try {
-                Font font = Font.load(path);
+            Font previous = currentFont;
+            FontTask<Font> task = new FontTask<>("Loading", progress -> {
+                Font font = Font.open(path);
+                Platform.runLater(() -> selectionGui.beginLoading(font));
+                font.decodeAll(progress);
+                return font;
+            });
+            task.progressProperty().addListener((observable, oldValue, newValue) -> {
+                if (currentTask == task) {
+                    selectionGui.tilesDecoded((int) (newValue.doubleValue() * Tile.TILE_COUNT));
+                }
+            });
+            run(selectionGui, task, font -> {
                 selectionGui.setFont(font);
                 currentFont = font;
                 currentFile = path;
-            } catch (MessageException e) {
-                error(e.getMessage());
+                watch(selectionGui, tileGui, font, path);
+            }, () -> selectionGui.restoreFont(previous));
+        });
+
+        selectionGui.onSave(() -> {
+            if (currentFile != null) {
+                Font font = currentFont;
+                Path file = currentFile;
+                FontSnapshot snapshot = font.snapshot();
+                FontTask<Path> task = new FontTask<>("Saving", progress -> {
+                    font.save(snapshot, file, progress);
+                    return file;
+                });
+                run(selectionGui, task, saved -> information("Changes saved to " + saved), () -> {
+                });
             }
+        });
 
+        selectionGui.onExportSheet(path -> {
+            FontSnapshot snapshot = currentFont.snapshot();
+            Rendering rendering = selectionGui.getRendering();
+            FontTask<Path> task = new FontTask<>("Exporting", progress -> {
+                try {
+                    SheetPng.write(snapshot, rendering, path);
+                } catch (IOException e) {
+                    throw new MessageException("Failed to export sheet.", e);
+                }
+                return path;
+            });
+            run(selectionGui, task, exported -> information("Sheet exported to " + exported), () -> {
+            });
         });
 
-        selectionGui.onSave(() -> {
-            try {
-                if (currentFile != null) {
-                    currentFont.save(currentFile);
-                    information("Changes saved to " + currentFile);
+        selectionGui.onImportSheet(path -> {
+            Font font = currentFont;
+            FontSnapshot snapshot = font.snapshot();
+            Rendering rendering = selectionGui.getRendering();
+            FontTask<TileSheet.Changes> task = new FontTask<>("Importing", progress -> {
+                try {
+                    return SheetPng.readChanges(path, snapshot, rendering);
+                } catch (IOException e) {
+                    throw new MessageException("Failed to import sheet.", e);
                 }
-            } catch (MessageException e) {
-                error(e.getMessage());
+            });
+            run(selectionGui, task, changes -> {
+                if (font != currentFont) {
+                    return;
+                }
+                BitSet changed = changes.applyTo(font);
+                changed.stream().forEach(index -> selectionGui.rerender(font.getTile(index)));
+                if (currentTile != null && changed.get(currentTile.index())) {
+                    tileGui.setTile(currentTile);
+                }
+                information(changed.cardinality() + " tiles changed.");
+            }, () -> {
+            });
+        });
+
+        selectionGui.onCancel(() -> {
+            if (currentTask != null) {
+                currentTask.cancel();
             }
         });
 
@@ -94,6 +165,15 @@ public final class App extends Application {
         });
 
 
+        selectionGui.onShowStatistics(() -> information(
+                String.format(
+                        "Image allocations avoided: %s%nRaster cache hits: %s%nRaster cache misses: %s",
+                        selectionGui.getAllocationsAvoided() + tileGui.getAllocationsAvoided(),
+                        selectionGui.getRasterCache().getHits() + tileGui.getRasterCache().getHits(),
+                        selectionGui.getRasterCache().getMisses() + tileGui.getRasterCache().getMisses()
+                )
+        ));
+
         tileGui.onTileUpdate(selectionGui::rerender);
         selectionGui.onFocusChange(focus -> tileGui.stage().setAlwaysOnTop(focus));
 
@@ -103,6 +183,67 @@ public final class App extends Application {
         selectionGui.stage().show();
     }
 
+    private void watch(SelectionGui selectionGui, TileGui tileGui, Font font, Path path) {
+        if (currentWatcher != null) {
+            currentWatcher.close();
+            currentWatcher = null;
+        }
+        try {
+            currentWatcher = font.watch(path, Platform::runLater, changed -> {
+                if (font != currentFont) {
+                    return;
+                }
+                changed.stream().forEach(index -> selectionGui.rerender(font.getTile(index)));
+                if (currentTile != null && changed.get(currentTile.index())) {
+                    tileGui.setTile(currentTile);
+                }
+            });
+        } catch (MessageException e) {
+            error(e.getMessage());
+        }
+    }
+
+    private <T> void run(SelectionGui selectionGui, FontTask<T> task, Consumer<T> onSuccess, Runnable onAbort) {
+        if (currentTask != null) {
+            return;
+        }
+        currentTask = task;
+        selectionGui.setBusy(true);
+        task.progressProperty().addListener((observable, oldValue, newValue) -> {
+            if (currentTask == task) {
+                selectionGui.setProgress(task.getMessage(), newValue.doubleValue());
+            }
+        });
+        task.setOnSucceeded(event -> {
+            finish(selectionGui);
+            onSuccess.accept(task.getValue());
+        });
+        task.setOnCancelled(event -> {
+            finish(selectionGui);
+            onAbort.run();
+        });
+        task.setOnFailed(event -> {
+            finish(selectionGui);
+            onAbort.run();
+            Throwable exception = task.getException();
+            if (exception instanceof MessageException) {
+                error(exception.getMessage());
+            } else {
+                error("Unexpected error: " + exception);
+            }
+        });
+        IO.execute(task);
+    }
+
+    private void finish(SelectionGui selectionGui) {
+        currentTask = null;
+        selectionGui.setBusy(false);
+    }
+
+    private static Rendering rendering(int scale, Rendering.Mode mode, Palette palette) {
+        return new Rendering(scale, mode, palette).atNativeResolution();
+    }
+
     private void error(String message) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle("Error");
@@ -0,0 +1,25 @@
+package com.smallhacker.hylianfont.app;
+
+import com.smallhacker.hylianfont.font.Progress;
+import javafx.concurrent.Task;
+
+import java.util.function.Function;
+
+final class FontTask<T> extends Task<T> implements Progress {
+    private final Function<Progress, T> work;
+
+    FontTask(String message, Function<Progress, T> work) {
+        this.work = work;
+        updateMessage(message);
+    }
+
+    @Override
+    protected T call() {
+        return work.apply(this);
+    }
+
+    @Override
+    public void update(int done, int total) {
+        updateProgress(done, total);
+    }
+}
@@ -0,0 +1,62 @@
+package com.smallhacker.hylianfont.app;
+
+import com.smallhacker.hylianfont.font.Framebuffer;
+import com.smallhacker.hylianfont.font.IndexedRaster;
+import com.smallhacker.hylianfont.font.Palette;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.nio.ByteBuffer;
+
+final class PixelWriterAdapter {
+    private int[] formatTable;
+    private PixelFormat<ByteBuffer> format;
+
+    void present(Framebuffer framebuffer, WritableImage image) {
+        int width = Math.min(framebuffer.getWidth(), (int) image.getWidth());
+        int height = Math.min(framebuffer.getHeight(), (int) image.getHeight());
+        if (width > 0 && height > 0) {
+            image.getPixelWriter().setPixels(
+                    0, 0, width, height,
+                    PixelFormat.getIntArgbInstance(), framebuffer.getPixels(), 0, framebuffer.getWidth()
+            );
+        }
+    }
+
+    void present(IndexedRaster raster, Palette palette, WritableImage image) {
+        present(raster, palette, image, 0, 0, raster.getWidth(), raster.getHeight());
+    }
+
+    void present(IndexedRaster raster, Palette palette, WritableImage image, int x, int y, int width, int height) {
+        int left = Math.max(x, 0);
+        int top = Math.max(y, 0);
+        int right = Math.min(x + width, Math.min(raster.getWidth(), (int) image.getWidth()));
+        int bottom = Math.min(y + height, Math.min(raster.getHeight(), (int) image.getHeight()));
+        if (left >= right || top >= bottom) {
+            return;
+        }
+
+        image.getPixelWriter().setPixels(
+                left, top, right - left, bottom - top,
+                getFormat(raster.getColorTable(palette)), raster.getIndices(), left + top * raster.getWidth(), raster.getWidth()
+        );
+    }
+
+    private PixelFormat<ByteBuffer> getFormat(int[] table) {
+        if (table != formatTable) {
+            format = PixelFormat.createByteIndexedInstance(table);
+            formatTable = table;
+        }
+        return format;
+    }
+
+    static Color toColor(int argb) {
+        return Color.rgb(
+                (argb >> 16) & 0xFF,
+                (argb >> 8) & 0xFF,
+                argb & 0xFF,
+                ((argb >>> 24) & 0xFF) / 255.0
+        );
+    }
+}
@@ -4,17 +4,24 @@ import com.smallhacker.gui.Gui;
 import com.smallhacker.gui.GuiCanvas;
 import com.smallhacker.gui.Handlers;
 import com.smallhacker.hylianfont.font.Font;
+import com.smallhacker.hylianfont.font.FontSnapshot;
+import com.smallhacker.hylianfont.font.IndexedRaster;
 import com.smallhacker.hylianfont.font.Palette;
 import com.smallhacker.hylianfont.font.Rendering;
 import com.smallhacker.hylianfont.font.Tile;
+import com.smallhacker.hylianfont.font.TileRasterCache;
+import com.smallhacker.hylianfont.font.TileSheet;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuItem;
 import javafx.scene.input.MouseEvent;
 import javafx.stage.Stage;
 
 import java.nio.file.Path;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -23,12 +30,17 @@ import static com.smallhacker.gui.GuiCanvas.rightClick;
 import static com.smallhacker.gui.Handlers.handlers;
 
 final class SelectionGui extends Gui {
-    private static final int WIDTH_IN_TILES = 32;
-    private static final int HEIGHT_IN_TILES = (int)Math.ceil(Tile.TILE_COUNT / WIDTH_IN_TILES);
+    private static final int WIDTH_IN_TILES = TileSheet.WIDTH_IN_TILES;
+    private static final int HEIGHT_IN_TILES = TileSheet.HEIGHT_IN_TILES;
 
+    private static final String TITLE = "Hylian Font 1.1.0";
     private static final int MENU_HEIGHT = 25;
+    private static final int RASTER_CACHE_PIXELS = 1 << 21;
 
     private final GuiCanvas canvas;
+    private final BitSet dirtyTiles = new BitSet(Tile.TILE_COUNT);
+    private final TileRasterCache<byte[]> rasterCache = TileRasterCache.indexed(RASTER_CACHE_PIXELS);
+    private final PixelWriterAdapter adapter = new PixelWriterAdapter();
 
     private final Handlers<Boolean> onFocusChange = handlers();
     private final Handlers<Tile> onTileSelect = handlers();
@@ -37,20 +49,35 @@ final class SelectionGui extends Gui {
     private final Handlers<Void> onSave = handlers();
     private final Handlers<ViewMode> onViewModeChange = handlers();
     private final Handlers<Palette> onPaletteChange = handlers();
+    private final Handlers<Void> onShowStatistics = handlers();
+    private final Handlers<Void> onCancel = handlers();
+    private final Handlers<Path> onExportSheet = handlers();
+    private final Handlers<Path> onImportSheet = handlers();
     private final FilePicker fileChooser;
+    private final FilePicker exportChooser;
+    private final FilePicker importChooser;
 
     private Font font;
+    private MenuItem loadMenuItem;
     private MenuItem saveMenuItem;
+    private MenuItem exportMenuItem;
+    private MenuItem importMenuItem;
+    private MenuItem cancelMenuItem;
+    private boolean busy;
+    private int decodedTiles;
     private Rendering rendering;
+    private IndexedRaster sheet;
+    private boolean renderPending;
 
     SelectionGui(Stage stage, List<Palette> palettes, Rendering rendering) {
-        super(stage, "Hylian Font 1.1.0", getWidth(rendering), getHeight(rendering) + MENU_HEIGHT);
+        super(stage, TITLE, getWidth(rendering), getHeight(rendering) + MENU_HEIGHT);
 
         this.rendering = rendering;
 
         buildMenu(palettes);
 
-        this.canvas = canvas(getWidth(rendering), getHeight(rendering));
+        this.canvas = canvas(getWidth(rendering), getHeight(rendering), rendering.getZoom());
+        this.sheet = new IndexedRaster(TileSheet.getWidth(rendering), TileSheet.getHeight(rendering));
 
         canvas.onMousePressed(
                 leftClick(me -> {
@@ -77,22 +104,98 @@ final class SelectionGui extends Gui {
         );
 
         this.fileChooser = fileChooser(onLoad::invoke, "Load ROM", ext("SNES ROM", "*.sfc", "*.smc"));
+        this.exportChooser = saveFileChooser(onExportSheet::invoke, "Export Sheet", ext("PNG Image", "*.png"));
+        this.importChooser = fileChooser(onImportSheet::invoke, "Import Sheet", ext("PNG Image", "*.png"));
     }
 
     private static int getWidth(Rendering rendering) {
-        return rendering.getScaledWidth() * WIDTH_IN_TILES;
+        return rendering.getDisplayWidth() * WIDTH_IN_TILES;
     }
 
     private static int getHeight(Rendering rendering) {
-        return rendering.getScaledHeight() * HEIGHT_IN_TILES;
+        return rendering.getDisplayHeight() * HEIGHT_IN_TILES;
     }
 
     public void setFont(Font font) {
         this.font = font;
+        font.onBudgetChange(remaining -> {
+            if (this.font == font && !busy) {
+                updateTitle();
+            }
+        });
+        updateTitle();
         render();
         Tile tile = font.getTile(0);
         onTileSelect.invoke(tile);
-        saveMenuItem.setDisable(false);
+        updateMenu();
+    }
+
+    public void beginLoading(Font font) {
+        this.font = font;
+        decodedTiles = 0;
+        renderPending = false;
+        dirtyTiles.clear();
+        canvas.cancelRender();
+        sheet.clear();
+        present();
+    }
+
+    public void tilesDecoded(int count) {
+        if (font != null) {
+            dirtyTiles.set(decodedTiles, Math.max(decodedTiles, count));
+            decodedTiles = Math.max(decodedTiles, count);
+            if (!renderPending) {
+                repaint();
+            }
+        }
+    }
+
+    public void restoreFont(Font font) {
+        this.font = font;
+        if (font != null) {
+            render();
+        } else {
+            canvas.cancelRender();
+            renderPending = false;
+            dirtyTiles.clear();
+            sheet.clear();
+            canvas.render(image -> {
+            });
+        }
+        updateTitle();
+    }
+
+    public void setBusy(boolean busy) {
+        this.busy = busy;
+        updateMenu();
+        if (!busy) {
+            updateTitle();
+        }
+    }
+
+    public void setProgress(String message, double progress) {
+        stage().setTitle(String.format("%s - %s %.0f%%", TITLE, message, Math.max(0, progress) * 100));
+    }
+
+    private void updateMenu() {
+        loadMenuItem.setDisable(busy);
+        saveMenuItem.setDisable(busy || font == null);
+        exportMenuItem.setDisable(busy || font == null);
+        importMenuItem.setDisable(busy || font == null);
+        cancelMenuItem.setDisable(!busy);
+    }
+
+    private void updateTitle() {
+        if (font == null) {
+            stage().setTitle(TITLE);
+            return;
+        }
+        int remaining = font.getRemainingBudget();
+        if (remaining >= 0) {
+            stage().setTitle(String.format("%s - %s bytes free", TITLE, remaining));
+        } else {
+            stage().setTitle(String.format("%s - %s bytes over budget", TITLE, -remaining));
+        }
     }
 
     public Rendering getRendering() {
@@ -100,14 +203,23 @@ final class SelectionGui extends Gui {
     }
 
     public void setRendering(Rendering rendering) {
+        boolean rasterChanged = this.rendering.getMode() != rendering.getMode()
+                || this.rendering.getScale() != rendering.getScale();
         this.rendering = rendering;
-        render();
+        if (rasterChanged) {
+            render();
+        } else {
+            present();
+        }
     }
 
     private void buildMenu(List<Palette> palettes) {
         Menu file = menu("File",
-                menuItem("Load ROM", this::load),
+                loadMenuItem = menuItem("Load ROM", this::load),
                 saveMenuItem = menuItem("Save ROM", this::save),
+                exportMenuItem = menuItem("Export Sheet", () -> exportChooser.run()),
+                importMenuItem = menuItem("Import Sheet", () -> importChooser.run()),
+                cancelMenuItem = menuItem("Cancel", () -> onCancel.invoke(null)),
                 menuItem("Exit", stage()::close)
         );
 
@@ -116,6 +228,7 @@ final class SelectionGui extends Gui {
                     onViewModeChange.invoke(viewMode);
                 }))
                 .collect(Collectors.toList());
+        viewModes.add(menuItem("Render Statistics", () -> onShowStatistics.invoke(null)));
         Menu view = menu("View", viewModes);
 
         List<MenuItem> paletteItems = palettes.stream()
@@ -127,6 +240,9 @@ final class SelectionGui extends Gui {
 
         menuBar(file, view, paletteMenu);
         saveMenuItem.setDisable(true);
+        exportMenuItem.setDisable(true);
+        importMenuItem.setDisable(true);
+        cancelMenuItem.setDisable(true);
     }
 
     private void load() {
@@ -165,37 +281,109 @@ final class SelectionGui extends Gui {
         onPaletteChange.add(handler);
     }
 
+    public void onShowStatistics(Runnable handler) {
+        onShowStatistics.add(x -> handler.run());
+    }
+
+    public void onCancel(Runnable handler) {
+        onCancel.add(x -> handler.run());
+    }
+
+    public void onExportSheet(Consumer<Path> handler) {
+        onExportSheet.add(handler);
+    }
+
+    public void onImportSheet(Consumer<Path> handler) {
+        onImportSheet.add(handler);
+    }
+
+    public int getAllocationsAvoided() {
+        return canvas.getAllocationsAvoided();
+    }
+
+    public TileRasterCache<?> getRasterCache() {
+        return rasterCache;
+    }
+
     public void rerender(Tile tile) {
-        // TODO: Optimize
-        render();
+        dirtyTiles.set(tile.index());
+        if (!renderPending) {
+            repaint();
+        }
     }
 
     private void render() {
         if (font != null) {
-            canvas.render(image -> {
-                int x = 0;
-                int y = 0;
-                int width = rendering.getScaledWidth();
-                int height = rendering.getScaledHeight();
-                for (Tile tile : font) {
-                    tile.render(image, x * width, y * height, rendering);
-                    x++;
-                    if (x >= WIDTH_IN_TILES) {
-                        x = 0;
-                        y++;
-                        if (y >= HEIGHT_IN_TILES) {
-                            break;
-                        }
+            FontSnapshot snapshot = font.snapshot();
+            Rendering rendering = this.rendering;
+            int width = sheet.getWidth();
+            int height = sheet.getHeight();
+
+            renderPending = true;
+            dirtyTiles.clear();
+            canvas.renderLater(
+                    superseded -> rasterize(snapshot, rendering, new IndexedRaster(width, height), superseded),
+                    (image, raster) -> {
+                        sheet = raster;
+                        renderPending = false;
+                        forEachDirtyTile(this::rasterize);
+                        adapter.present(sheet, this.rendering.getPalette(), image);
                     }
-                }
-            });
+            );
+        }
+    }
+
+    private IndexedRaster rasterize(FontSnapshot snapshot, Rendering rendering, IndexedRaster raster, BooleanSupplier superseded) {
+        int maxIndex = Math.min(snapshot.size(), WIDTH_IN_TILES * HEIGHT_IN_TILES);
+        for (int i = 0; i < maxIndex; i++) {
+            if (superseded.getAsBoolean()) {
+                return null;
+            }
+            snapshot.getTile(i).render(raster, cellX(i, rendering), cellY(i, rendering), rendering, rasterCache);
         }
+        return raster;
+    }
+
+    private void present() {
+        if (font != null) {
+            canvas.update(image -> adapter.present(sheet, rendering.getPalette(), image));
+        }
+    }
+
+    private void repaint() {
+        if (font != null) {
+            canvas.update(image -> forEachDirtyTile(index -> {
+                rasterize(index);
+                adapter.present(sheet, rendering.getPalette(), image, cellX(index, rendering), cellY(index, rendering),
+                        rendering.getScaledWidth(), rendering.getScaledHeight());
+            }));
+        }
+    }
+
+    private void forEachDirtyTile(IntConsumer action) {
+        int maxIndex = Math.min(font.size(), WIDTH_IN_TILES * HEIGHT_IN_TILES);
+        for (int i = dirtyTiles.nextSetBit(0); i >= 0 && i < maxIndex; i = dirtyTiles.nextSetBit(i + 1)) {
+            action.accept(i);
+        }
+        dirtyTiles.clear();
+    }
+
+    private void rasterize(int index) {
+        font.getTile(index).render(sheet, cellX(index, rendering), cellY(index, rendering), rendering, rasterCache);
+    }
+
+    private static int cellX(int index, Rendering rendering) {
+        return TileSheet.cellX(index, rendering);
+    }
+
+    private static int cellY(int index, Rendering rendering) {
+        return TileSheet.cellY(index, rendering);
     }
 
 
     private int getTileNumber(MouseEvent me) {
-        int x = (int) me.getX() / rendering.getScaledWidth();
-        int y = (int) me.getY() / rendering.getScaledHeight();
+        int x = (int) me.getX() / rendering.getDisplayWidth();
+        int y = (int) me.getY() / rendering.getDisplayHeight();
         return x + (y * 32);
     }
 }
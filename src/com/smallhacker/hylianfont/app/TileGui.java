@@ -1,10 +1,13 @@
 package com.smallhacker.hylianfont.app;
 
+import com.smallhacker.gui.FrameBatcher;
 import com.smallhacker.gui.Gui;
 import com.smallhacker.gui.GuiCanvas;
 import com.smallhacker.gui.Handlers;
+import com.smallhacker.hylianfont.font.Framebuffer;
 import com.smallhacker.hylianfont.font.Rendering;
 import com.smallhacker.hylianfont.font.Tile;
+import com.smallhacker.hylianfont.font.TileRasterCache;
 import javafx.scene.control.Button;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.paint.Color;
@@ -12,6 +15,7 @@ import javafx.scene.shape.Rectangle;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 
+import java.util.Set;
 import java.util.function.Consumer;
 
 import static com.smallhacker.gui.Handlers.handlers;
@@ -19,10 +23,15 @@ import static com.smallhacker.gui.Handlers.handlers;
 final class TileGui extends Gui {
     private static final int TILE_LINES_TO_HIDE = 2;
     private static final int BUTTON_SIZE = 24;
+    private static final int RASTER_CACHE_PIXELS = 1 << 20;
 
     private final GuiCanvas canvas;
     private final Button[] colorButtons = new Button[4];
     private final Handlers<Tile> onTileUpdate = handlers();
+    private final TileRasterCache<int[]> rasterCache = TileRasterCache.argb(RASTER_CACHE_PIXELS);
+    private final FrameBatcher<Tile> editedTiles = new FrameBatcher<>(this::onTilesEdited);
+    private final PixelWriterAdapter adapter = new PixelWriterAdapter();
+    private final Framebuffer framebuffer;
 
     private Tile currentTile;
     private byte color;
@@ -33,7 +42,8 @@ final class TileGui extends Gui {
         stage.initStyle(StageStyle.UTILITY);
 
         this.rendering = rendering;
-        this.canvas = canvas(tileWidth(rendering), tileHeight(rendering));
+        this.canvas = canvas(tileWidth(rendering), tileHeight(rendering), rendering.getZoom());
+        this.framebuffer = new Framebuffer(tileWidth(rendering) / rendering.getZoom(), tileHeight(rendering) / rendering.getZoom());
         for (byte i = 0; i < 4; i++) {
             byte color = i;
             Button button = colorButton();
@@ -41,6 +51,7 @@ final class TileGui extends Gui {
             colorButtons[i] = button;
         }
         updateButtonColors();
+        updateBorder();
 
         setColor((byte) 0);
 
@@ -49,11 +60,11 @@ final class TileGui extends Gui {
     }
 
     private static int tileWidth(Rendering rendering) {
-        return rendering.getScaledWidth();
+        return rendering.getDisplayWidth();
     }
 
     private static int tileHeight(Rendering rendering) {
-        return rendering.getScaledHeight() - (TILE_LINES_TO_HIDE * rendering.getScale());
+        return rendering.getDisplayHeight() - (TILE_LINES_TO_HIDE * rendering.getDisplayScale());
     }
 
     private void onMouse(MouseEvent me) {
@@ -73,8 +84,8 @@ final class TileGui extends Gui {
     private void updateButtonColors() {
         for (int i = 0; i < colorButtons.length; i++) {
             Button button = colorButtons[i];
-            Color color = rendering.getPalette().getColor(i);
-            button.setGraphic(new Rectangle(16, 16, color));
+            int argb = rendering.getPalette().getArgb(i);
+            button.setGraphic(new Rectangle(16, 16, PixelWriterAdapter.toColor(argb)));
         }
     }
 
@@ -89,8 +100,7 @@ final class TileGui extends Gui {
         if (currentTile != null) {
             int index = toIndex(me);
             if (currentTile.set(index, color)) {
-                render();
-                onTileUpdate.invoke(currentTile);
+                editedTiles.add(currentTile);
             }
         }
     }
@@ -103,14 +113,22 @@ final class TileGui extends Gui {
     }
 
     private int toIndex(MouseEvent me) {
-        int scale = rendering.getScale();
+        int scale = rendering.getDisplayScale();
         int offsetY = TILE_LINES_TO_HIDE * scale;
         int x = ((int) me.getX()) / scale;
         int y = ((int) me.getY() + offsetY) / scale;
         return Tile.coordsToIndex(x, y);
     }
 
+    private void onTilesEdited(Set<Tile> tiles) {
+        if (tiles.contains(currentTile)) {
+            render();
+        }
+        tiles.forEach(onTileUpdate::invoke);
+    }
+
     public void setTile(Tile tile) {
+        editedTiles.flush();
         currentTile = tile;
         render();
     }
@@ -120,23 +138,42 @@ final class TileGui extends Gui {
     }
 
     public void setRendering(Rendering rendering) {
-        if (this.rendering.getScaledWidth() != rendering.getScaledWidth() || this.rendering.getScaledHeight() != rendering.getScaledHeight()) {
+        if (this.rendering.getScaledWidth() != rendering.getScaledWidth() || this.rendering.getScaledHeight() != rendering.getScaledHeight() || this.rendering.getZoom() != rendering.getZoom()) {
             throw new IllegalArgumentException("Scaled size cannot change.");
         }
         this.rendering = rendering;
         render();
         updateButtonColors();
+        updateBorder();
+    }
+
+    private void updateBorder() {
+        // An unscaled raster has no room for the mask border, so draw it over the view at display scale
+        if (rendering.getMode() == Rendering.Mode.MASKED && rendering.getScale() == 1) {
+            int scale = rendering.getDisplayScale();
+            canvas.setGuides(Color.RED, scale - 1, scale * 9);
+        } else {
+            canvas.setGuides(Color.RED);
+        }
     }
 
     private void render() {
         if (currentTile != null) {
-            canvas.render(image -> {
-                int offsetY = -TILE_LINES_TO_HIDE * rendering.getScale();
-                currentTile.render(image, 0, offsetY, rendering);
-            });
+            int offsetY = -TILE_LINES_TO_HIDE * rendering.getScale();
+            framebuffer.clear();
+            currentTile.render(framebuffer, 0, offsetY, rendering, rasterCache);
+            canvas.render(image -> adapter.present(framebuffer, image));
         }
     }
 
+    public int getAllocationsAvoided() {
+        return canvas.getAllocationsAvoided();
+    }
+
+    public TileRasterCache<?> getRasterCache() {
+        return rasterCache;
+    }
+
     public void onTileUpdate(Consumer<Tile> handler) {
         onTileUpdate.add(handler);
     }
@@ -0,0 +1,310 @@
+package com.smallhacker.hylianfont.cli;
+
+import com.smallhacker.hylianfont.font.Font;
+import com.smallhacker.hylianfont.font.MessageException;
+import com.smallhacker.hylianfont.font.Palettes;
+import com.smallhacker.hylianfont.font.PatchWriter;
+import com.smallhacker.hylianfont.font.Rendering;
+import com.smallhacker.hylianfont.font.RomChecksum;
+import com.smallhacker.hylianfont.font.SheetPng;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public final class BatchTool {
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: BatchTool <command> [options] <rom or directory>...",
+            "",
+            "Commands:",
+            "  export   Write <rom>.png tile sheets into --out",
+            "  import   Read <rom>.png tile sheets from --sheets and save them into the ROMs",
+            "  verify   Decode and re-encode every tile, comparing against the ROM bytes",
+            "  patch    Apply <rom>.png tile sheets from --sheets and write <rom>.ips/.bps patches into --out",
+            "           instead of modifying the ROMs",
+            "",
+            "ROMs found by walking a directory keep their path below that directory, so dir/a/rom.sfc",
+            "uses a/rom.png in --out and --sheets.",
+            "",
+            "Options:",
+            "  --out <dir>         Output directory for export (default: current directory)",
+            "  --sheets <dir>      Sheet directory for import (default: current directory)",
+            "  --scale <n>         Sheet scale (default: 1)",
+            "  --palette <name>    Sheet palette (default: Text Boxes)",
+            "  --format <ips|bps>  Patch format (default: bps)",
+            "  --threads <n>       Worker threads (default: available processors)"
+    );
+
+    private final String command;
+    private final Path out;
+    private final Path sheets;
+    private final Rendering rendering;
+    private final PatchWriter.Format format;
+    private final int threads;
+    private final List<Path> inputs;
+
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+
+    private BatchTool(String command, Path out, Path sheets, Rendering rendering, PatchWriter.Format format, int threads, List<Path> inputs) {
+        this.command = command;
+        this.out = out;
+        this.sheets = sheets;
+        this.rendering = rendering;
+        this.format = format;
+        this.threads = threads;
+        this.inputs = inputs;
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.exit(parse(args).run());
+        } catch (MessageException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    }
+
+    private static BatchTool parse(String[] args) {
+        if (args.length == 0) {
+            throw new MessageException("No command given.");
+        }
+        String command = args[0];
+        if (!Arrays.asList("export", "import", "verify", "patch").contains(command)) {
+            throw new MessageException("Unknown command: " + command);
+        }
+
+        Path out = Paths.get(".");
+        Path sheets = Paths.get(".");
+        int scale = 1;
+        String palette = "Text Boxes";
+        PatchWriter.Format format = PatchWriter.Format.BPS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out":
+                    out = Paths.get(value(args, ++i));
+                    break;
+                case "--sheets":
+                    sheets = Paths.get(value(args, ++i));
+                    break;
+                case "--scale":
+                    scale = number(args, ++i);
+                    break;
+                case "--palette":
+                    palette = value(args, ++i);
+                    break;
+                case "--format":
+                    format = PatchWriter.Format.forFileName("." + value(args, ++i));
+                    break;
+                case "--threads":
+                    threads = number(args, ++i);
+                    break;
+                default:
+                    inputs.add(Paths.get(args[i]));
+            }
+        }
+        if (inputs.isEmpty()) {
+            throw new MessageException("No ROMs given.");
+        }
+
+        Rendering rendering = new Rendering(scale, Rendering.Mode.STANDARD, Palettes.byName(palette));
+        return new BatchTool(command, out, sheets, rendering, format, threads, inputs);
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new MessageException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    private static int number(String[] args, int i) {
+        try {
+            int number = Integer.parseInt(value(args, i));
+            if (number < 1) {
+                throw new NumberFormatException();
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new MessageException("Expected a positive number for " + args[i - 1]);
+        }
+    }
+
+    private int run() {
+        Map<Path, Path> roms = findRoms();
+        if (command.equals("export") || command.equals("patch")) {
+            createDirectories(out);
+        }
+
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "Batch worker");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+
+        long start = System.nanoTime();
+        roms.forEach((rom, name) -> workers.execute(() -> process(rom, name)));
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int files = succeeded.get() + failed.get();
+        System.out.println(String.format(Locale.ROOT,
+                "%s files (%s failed) in %.2f s: %.1f files/s, %.1f MB/s",
+                files, failed.get(), seconds, files / seconds, bytes.get() / seconds / (1 << 20)
+        ));
+        return failed.get() == 0 ? 0 : 1;
+    }
+
+    private Map<Path, Path> findRoms() {
+        Map<Path, Path> roms = new LinkedHashMap<>();
+        Map<Path, Path> owners = new HashMap<>();
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(input)) {
+                    files = walk.filter(BatchTool::isRom).sorted().collect(Collectors.toList());
+                } catch (IOException e) {
+                    throw new MessageException("Failed to list " + input);
+                }
+                for (Path rom : files) {
+                    addRom(roms, owners, rom, outputName(input.relativize(rom)));
+                }
+            } else {
+                addRom(roms, owners, input, outputName(input.getFileName()));
+            }
+        }
+        return roms;
+    }
+
+    private static void addRom(Map<Path, Path> roms, Map<Path, Path> owners, Path rom, Path name) {
+        Path owner = owners.putIfAbsent(name, rom);
+        if (owner != null) {
+            throw new MessageException(owner + " and " + rom + " would share the sheet and patch name " + name);
+        }
+        roms.put(rom, name);
+    }
+
+    private static Path outputName(Path relative) {
+        String name = relative.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return relative.resolveSibling(dot > 0 ? name.substring(0, dot) : name);
+    }
+
+    private static boolean isRom(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return Files.isRegularFile(path) && (name.endsWith(".sfc") || name.endsWith(".smc"));
+    }
+
+    private static void createDirectories(Path directory) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new MessageException("Failed to create " + directory);
+        }
+    }
+
+    private void process(Path rom, Path name) {
+        long start = System.nanoTime();
+        String result;
+        boolean ok;
+        try {
+            result = execute(rom, name);
+            ok = true;
+            bytes.addAndGet(Files.size(rom));
+        } catch (MessageException e) {
+            result = e.getMessage();
+            ok = false;
+        } catch (IOException | RuntimeException e) {
+            result = e.toString();
+            ok = false;
+        }
+        (ok ? succeeded : failed).incrementAndGet();
+
+        double millis = (System.nanoTime() - start) / 1e6;
+        String line = String.format(Locale.ROOT, "%-4s %8.2f ms  %s: %s", ok ? "OK" : "FAIL", millis, rom, result);
+        synchronized (System.out) {
+            System.out.println(line);
+        }
+    }
+
+    private String execute(Path rom, Path name) throws IOException {
+        switch (command) {
+            case "export": {
+                Font font = Font.load(rom);
+                Path sheet = output(name, ".png");
+                SheetPng.write(font.snapshot(), rendering, sheet);
+                return "exported " + sheet;
+            }
+            case "import": {
+                Path sheet = findSheet(name);
+                Font font = Font.load(rom);
+                BitSet changed = SheetPng.readChanges(sheet, font.snapshot(), rendering).applyTo(font);
+                if (!changed.isEmpty()) {
+                    font.save(rom);
+                }
+                return changed.cardinality() + " tiles changed";
+            }
+            case "patch": {
+                Path sheet = findSheet(name);
+                Font font = Font.load(rom);
+                BitSet changed = SheetPng.readChanges(sheet, font.snapshot(), rendering).applyTo(font);
+                Path patch = output(name, "." + format.getExtension());
+                byte[] bytes = font.createPatch(font.snapshot(), rom, format);
+                Files.write(patch, bytes);
+                return String.format("%s tiles changed, %s bytes written to %s", changed.cardinality(), bytes.length, patch);
+            }
+            default: {
+                BitSet mismatches = Font.load(rom).getRoundTripMismatches();
+                if (!mismatches.isEmpty()) {
+                    throw new MessageException("round trip mismatch in tiles " + mismatches);
+                }
+                return RomChecksum.verify(rom) ? "round trip ok, checksum ok" : "round trip ok, checksum mismatch";
+            }
+        }
+    }
+
+    private Path findSheet(Path name) {
+        Path sheet = sheets.resolve(name + ".png");
+        if (!Files.exists(sheet)) {
+            throw new MessageException("Missing sheet " + sheet);
+        }
+        return sheet;
+    }
+
+    private Path output(Path name, String extension) {
+        Path file = out.resolve(name + extension);
+        createDirectories(file.getParent());
+        return file;
+    }
+}
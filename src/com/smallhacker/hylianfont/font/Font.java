@@ -1,103 +1,602 @@
 package com.smallhacker.hylianfont.font;
 
-import com.smallhacker.hylianfont.app.MessageException;
-
 import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collector;
-
-import static java.lang.System.arraycopy;
-import static java.util.stream.Collectors.collectingAndThen;
-import static java.util.stream.Collectors.toList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public final class Font implements Iterable<Tile> {
-    private static final int START_OF_TILE_DATA = 0x70000;
-    private static final int START_OF_TILE_BITMASK = 0x73844;
-    private static final int MAX_TILE_DATA_LENGTH = 0x3844;
+    static final int START_OF_TILE_DATA = 0x70000;
+    static final int START_OF_TILE_BITMASK = 0x73844;
+    static final int MAX_TILE_DATA_LENGTH = 0x3844;
+    static final int END_OF_FONT = START_OF_TILE_BITMASK + Tile.TILE_COUNT * TileIndex.BITMASK_LENGTH;
+
+    private final AtomicReferenceArray<Tile> tiles;
+    private final AtomicLongArray savedVersions;
+    private volatile TileIndex index;
+    private final TileStore store;
+
+    private final int[] encodedSizes = new int[Tile.TILE_COUNT];
+    private final List<IntConsumer> onBudgetChange = new ArrayList<>();
+    private int encodedSize;
+
+    private volatile FontSnapshot snapshot;
+    private final Object saveLock = new Object();
+    private boolean saving;
+    private RomChecksum.Mode checksumMode = RomChecksum.Mode.INCREMENTAL;
+
+    private byte[] writtenTileData;
+    private byte[] writtenBitmasks;
+    private int[] writtenOffsets;
+
+    private final ByteBuffer scratchTileData = ByteBuffer.allocate(Tile.MAX_ENCODED_LENGTH);
+    private final ByteBuffer scratchBitmask = ByteBuffer.allocate(TileIndex.BITMASK_LENGTH);
+
+    private Font(TileIndex index, TileStore store, List<Tile> tiles) {
+        this.tiles = new AtomicReferenceArray<>(Tile.TILE_COUNT);
+        this.savedVersions = new AtomicLongArray(Tile.TILE_COUNT);
+        this.index = index;
+        this.store = store;
 
-    private final List<Tile> tiles;
+        this.writtenTileData = index.tileDataImage(MAX_TILE_DATA_LENGTH);
+        this.writtenBitmasks = index.bitmaskImage();
+        this.writtenOffsets = index.tileDataOffsets();
+        for (int i = 0; i < Tile.TILE_COUNT; i++) {
+            encodedSizes[i] = writtenOffsets[i + 1] - writtenOffsets[i];
+            encodedSize += encodedSizes[i];
+        }
 
-    private Font(List<Tile> tiles) {
-        this.tiles = tiles;
+        if (tiles != null) {
+            for (Tile tile : tiles) {
+                this.tiles.set(tile.index(), tile);
+                savedVersions.set(tile.index(), tile.version());
+                track(tile);
+            }
+        }
     }
 
     public Tile getTile(int index) {
-        return tiles.get(index);
+        Tile tile = tiles.get(index);
+        if (tile == null) {
+            synchronized (store) {
+                tile = tiles.get(index);
+                if (tile == null) {
+                    tile = this.index.decode(index, store);
+                    savedVersions.set(index, tile.version());
+                    track(tile);
+                    tiles.set(index, tile);
+                }
+            }
+        }
+        return tile;
     }
 
     public int size() {
-        return tiles.size();
+        return tiles.length();
+    }
+
+    private void track(Tile tile) {
+        tile.onEncodedSizeChange(size -> {
+            setEncodedSize(tile.index(), size);
+            fireBudgetChange();
+        });
+    }
+
+    private void setEncodedSize(int index, int size) {
+        encodedSize += size - encodedSizes[index];
+        encodedSizes[index] = size;
+    }
+
+    private void fireBudgetChange() {
+        int remaining = getRemainingBudget();
+        onBudgetChange.forEach(listener -> listener.accept(remaining));
+    }
+
+    public int getRemainingBudget() {
+        return MAX_TILE_DATA_LENGTH - encodedSize;
+    }
+
+    public void onBudgetChange(IntConsumer listener) {
+        onBudgetChange.add(listener);
+    }
+
+    public boolean isModified(int index) {
+        Tile tile = tiles.get(index);
+        return tile != null && tile.version() != savedVersions.get(index);
+    }
+
+    public synchronized FontSnapshot snapshot() {
+        FontSnapshot previous = snapshot;
+        Tile[] shared = previous != null ? previous.tiles() : new Tile[size()];
+        Tile[] tiles = null;
+        for (int i = 0; i < size(); i++) {
+            Tile tile = getTile(i);
+            if (shared[i] == null || shared[i].version() != tile.version()) {
+                if (tiles == null) {
+                    tiles = shared.clone();
+                }
+                tiles[i] = tile.snapshot();
+            }
+        }
+        if (tiles == null) {
+            return previous;
+        }
+
+        long version = previous != null ? previous.version() + 1 : 1;
+        FontSnapshot current = new FontSnapshot(version, tiles);
+        snapshot = current;
+        return current;
+    }
+
+    public BitSet getDifferingTiles(Font other) {
+        decodeAll(Progress.NONE);
+        other.decodeAll(Progress.NONE);
+        return store.differingTiles(other.store);
+    }
+
+    public void decodeAll(Progress progress) {
+        for (int i = 0; i < size(); i++) {
+            checkCancelled(progress);
+            getTile(i);
+            progress.update(i + 1, size());
+        }
+    }
+
+    private static void checkCancelled(Progress progress) {
+        if (progress.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    public synchronized BitSet getRoundTripMismatches() {
+        BitSet mismatches = new BitSet(size());
+        for (int i = 0; i < size(); i++) {
+            if (!isModified(i) && !encodesAsWritten(getTile(i))) {
+                mismatches.set(i);
+            }
+        }
+        return mismatches;
+    }
+
+    private boolean encodesAsWritten(Tile tile) {
+        scratchTileData.clear();
+        scratchBitmask.clear();
+        tile.encode(scratchTileData, scratchBitmask);
+        return isWritten(tile.index(), scratchTileData.array(), 0, scratchTileData.position(), scratchBitmask.array(), 0);
+    }
+
+    private boolean isWritten(int tile, byte[] tileData, int offset, int length, byte[] bitmasks, int bitmaskOffset) {
+        int writtenOffset = writtenOffsets[tile];
+        return length == writtenOffsets[tile + 1] - writtenOffset
+                && regionEquals(tileData, offset, writtenTileData, writtenOffset, length)
+                && regionEquals(bitmasks, bitmaskOffset, writtenBitmasks, tile * TileIndex.BITMASK_LENGTH, TileIndex.BITMASK_LENGTH);
+    }
+
+    private static boolean regionEquals(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[aOffset + i] != b[bOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public BitSet getModifiedTiles() {
+        BitSet modified = new BitSet(size());
+        for (int i = 0; i < size(); i++) {
+            if (isModified(i)) {
+                modified.set(i);
+            }
+        }
+        return modified;
     }
 
     public static Font load(Path filePath) {
         try {
-            byte[] bytes = Files.readAllBytes(filePath);
-            List<Tile> tiles = Tile.load(bytes, START_OF_TILE_DATA, START_OF_TILE_BITMASK);
-            return new Font(tiles);
-        } catch (IOException | ArrayIndexOutOfBoundsException e) {
+            TileIndex index = readIndex(filePath, false);
+            TileStore store = new TileStore(Tile.TILE_COUNT);
+            return new Font(index, store, index.decodeAll(store));
+        } catch (IOException | IndexOutOfBoundsException e) {
             throw new MessageException("Failed to load file.", e);
         }
     }
 
-    public void save(Path filePath) {
-        List<Tile.Output> encodedTiles = tiles.stream()
-                .map(Tile::encode)
-                .collect(toList());
+    public static Font open(Path filePath) {
+        try {
+            return new Font(readIndex(filePath, false), new TileStore(Tile.TILE_COUNT), null);
+        } catch (IOException | IndexOutOfBoundsException e) {
+            throw new MessageException("Failed to load file.", e);
+        }
+    }
 
-        byte[] tileData = encodedTiles.stream()
-                .map(Tile.Output::getTileData)
-                .collect(concatArrays());
+    public static Font loadLazily(Path filePath) {
+        try {
+            return new Font(readIndex(filePath, true), new TileStore(Tile.TILE_COUNT), null);
+        } catch (IOException | IndexOutOfBoundsException e) {
+            throw new MessageException("Failed to load file.", e);
+        }
+    }
 
-        byte[] bitmasks = encodedTiles.stream()
-                .map(Tile.Output::getBitmask)
-                .collect(concatArrays());
+    private static TileIndex readIndex(Path filePath, boolean mapped) throws IOException {
+        int length = END_OF_FONT - START_OF_TILE_DATA;
+        ByteBuffer region;
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            if (channel.size() < END_OF_FONT) {
+                throw new MessageException("File is too small to contain a font.");
+            }
 
-        if (tileData.length > MAX_TILE_DATA_LENGTH) {
-            throw new MessageException(
-                    String.format(
-                            "Tile data is too large. (%s bytes, %s available)",
-                            tileData.length,
-                            MAX_TILE_DATA_LENGTH
-                    )
-            );
+            if (mapped) {
+                region = channel.map(FileChannel.MapMode.READ_ONLY, START_OF_TILE_DATA, length);
+            } else {
+                region = ByteBuffer.wrap(read(channel, START_OF_TILE_DATA, length));
+            }
         }
+        return TileIndex.read(region, 0, START_OF_TILE_BITMASK - START_OF_TILE_DATA);
+    }
+
+    public BitSet reload(Path filePath) {
+        while (true) {
+            Reload reload = read(filePath);
+            if (reload == null) {
+                return new BitSet(size());
+            }
+            BitSet changed = apply(reload);
+            if (changed != null) {
+                return changed;
+            }
+        }
+    }
 
+    private Reload read(Path filePath) {
+        synchronized (saveLock) {
+            TileIndex reloaded;
+            try {
+                reloaded = readIndex(filePath, false);
+            } catch (IOException | IndexOutOfBoundsException e) {
+                throw new MessageException("Failed to reload file.", e);
+            }
+            byte[] tileData = reloaded.tileDataImage(MAX_TILE_DATA_LENGTH);
+            byte[] bitmasks = reloaded.bitmaskImage();
+            int[] offsets = reloaded.tileDataOffsets();
 
+            synchronized (this) {
+                if (Arrays.equals(tileData, writtenTileData) && Arrays.equals(bitmasks, writtenBitmasks)) {
+                    return null;
+                }
+
+                BitSet changed = new BitSet(size());
+                for (int i = 0; i < size(); i++) {
+                    int length = offsets[i + 1] - offsets[i];
+                    if (!isWritten(i, tileData, offsets[i], length, bitmasks, i * TileIndex.BITMASK_LENGTH)) {
+                        changed.set(i);
+                    }
+                }
+                return new Reload(reloaded, writtenTileData, writtenBitmasks, tileData, bitmasks, offsets, changed);
+            }
+        }
+    }
+
+    private synchronized BitSet apply(Reload reload) {
+        if (saving || writtenTileData != reload.baseTileData || writtenBitmasks != reload.baseBitmasks) {
+            return null;
+        }
+
+        BitSet changed = reload.changed;
+        synchronized (store) {
+            index = reload.index;
+            for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+                Tile tile = tiles.get(i);
+                if (tile != null) {
+                    reload.index.reload(tile);
+                    savedVersions.set(i, tile.version());
+                } else {
+                    setEncodedSize(i, reload.offsets[i + 1] - reload.offsets[i]);
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            fireBudgetChange();
+        }
+
+        writtenTileData = reload.tileData;
+        writtenBitmasks = reload.bitmasks;
+        writtenOffsets = reload.offsets;
+        return changed;
+    }
+
+    public FontWatcher watch(Path filePath, Executor editor, Consumer<BitSet> onReload) {
+        return FontWatcher.start(filePath, () -> {
+            while (!reload(filePath, editor, onReload)) {
+                // A save got in between reading the file and applying it, so read it again
+            }
+        });
+    }
+
+    private boolean reload(Path filePath, Executor editor, Consumer<BitSet> onReload) {
+        Reload reload;
+        try {
+            reload = read(filePath);
+        } catch (MessageException e) {
+            // The file is probably still being replaced; the next change event will retry
+            return true;
+        }
+        if (reload == null) {
+            return true;
+        }
+
+        CompletableFuture<BitSet> applied = new CompletableFuture<>();
+        editor.execute(() -> {
+            BitSet changed;
+            try {
+                changed = apply(reload);
+            } catch (RuntimeException e) {
+                applied.completeExceptionally(e);
+                throw e;
+            }
+            applied.complete(changed);
+            if (changed != null && !changed.isEmpty()) {
+                onReload.accept(changed);
+            }
+        });
+
+        try {
+            return applied.get() != null;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    private Stream<Tile> tiles() {
+        return IntStream.range(0, size()).mapToObj(this::getTile);
+    }
+
+    public void save(Path filePath) {
+        save(snapshot(), filePath, Progress.NONE);
+    }
+
+    public synchronized void setChecksumMode(RomChecksum.Mode checksumMode) {
+        this.checksumMode = checksumMode;
+    }
+
+    public void save(FontSnapshot snapshot, Path filePath, Progress progress) {
         File file = filePath.toFile();
         if (!file.exists()) {
             throw new MessageException("File does not exist.");
         }
 
-        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
-            out.seek(START_OF_TILE_DATA);
-            out.write(tileData);
-            out.seek(START_OF_TILE_BITMASK);
-            out.write(bitmasks);
+        // The Font monitor is only held while encoding and committing, so snapshot() never waits on the disk
+        synchronized (saveLock) {
+            int steps = snapshot.size() + 1;
+            Encoding encoding;
+            RomChecksum.Mode checksumMode;
+            synchronized (this) {
+                encoding = encode(snapshot, progress, steps);
+                checksumMode = this.checksumMode;
+                saving = true;
+            }
+            try {
+                if (encoding.changed) {
+                    writeAtomically(filePath, encoding, checksumMode, progress);
+                }
+                progress.update(steps, steps);
+
+                synchronized (this) {
+                    writtenTileData = encoding.tileData;
+                    writtenBitmasks = encoding.bitmasks;
+                    writtenOffsets = encoding.offsets;
+                    for (int i = 0; i < encoding.versions.length; i++) {
+                        savedVersions.set(i, encoding.versions[i]);
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    saving = false;
+                }
+            }
+        }
+    }
+
+    public byte[] createPatch(FontSnapshot snapshot, Path original, PatchWriter.Format format) {
+        Encoding encoding;
+        synchronized (this) {
+            encoding = encode(snapshot, Progress.NONE, snapshot.size());
+        }
+        try (FileChannel channel = FileChannel.open(original, StandardOpenOption.READ)) {
+            if (channel.size() < END_OF_FONT) {
+                throw new MessageException("File is too small to contain a font.");
+            }
+            ByteBuffer rom = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            List<PatchWriter.Run> runs = new ArrayList<>();
+            PatchWriter.diff(rom, START_OF_TILE_DATA, encoding.tileData, format.getMergeGap(), runs);
+            PatchWriter.diff(rom, START_OF_TILE_BITMASK, encoding.bitmasks, format.getMergeGap(), runs);
+            PatchWriter.updateChecksum(rom, runs);
+            return format.write(rom, runs);
+        } catch (IOException e) {
+            throw new MessageException("Failed to read original file.", e);
+        }
+    }
+
+    private Encoding encode(FontSnapshot snapshot, Progress progress, int steps) {
+        long[] versions = new long[snapshot.size()];
+        byte[] tileData = writtenTileData;
+        byte[] bitmasks = writtenBitmasks;
+        int[] offsets = writtenOffsets;
+        ByteBuffer tileDataOut = null;
+        ByteBuffer bitmasksOut = null;
+
+        for (int i = 0; i < snapshot.size(); i++) {
+            checkCancelled(progress);
+            Tile tile = snapshot.getTile(i);
+            versions[i] = tile.version();
+            boolean modified = tile.version() != savedVersions.get(i);
+
+            try {
+                if (tileDataOut != null) {
+                    offsets[i] = tileDataOut.position();
+                    if (modified) {
+                        tile.encode(tileDataOut, bitmasksOut);
+                    } else {
+                        tileDataOut.put(writtenTileData, writtenOffsets[i], writtenOffsets[i + 1] - writtenOffsets[i]);
+                        bitmasksOut.put(writtenBitmasks, i * TileIndex.BITMASK_LENGTH, TileIndex.BITMASK_LENGTH);
+                    }
+                } else if (modified && !encodesAsWritten(tile)) {
+                    // Everything from the first changed tile onwards is rewritten, as its offsets may shift
+                    tileData = writtenTileData.clone();
+                    bitmasks = writtenBitmasks.clone();
+                    offsets = writtenOffsets.clone();
+                    tileDataOut = ByteBuffer.wrap(tileData);
+                    tileDataOut.position(offsets[i]);
+                    bitmasksOut = ByteBuffer.wrap(bitmasks);
+                    bitmasksOut.position(i * TileIndex.BITMASK_LENGTH);
+                    tileDataOut.put(scratchTileData.array(), 0, scratchTileData.position());
+                    bitmasksOut.put(scratchBitmask.array());
+                }
+            } catch (BufferOverflowException e) {
+                throw new MessageException(
+                        String.format(
+                                "Tile data is too large. (%s bytes available, exceeded at tile %s)",
+                                MAX_TILE_DATA_LENGTH,
+                                i
+                        )
+                );
+            }
+            progress.update(i + 1, steps);
+        }
+
+        if (tileDataOut != null) {
+            offsets[snapshot.size()] = tileDataOut.position();
+        }
+        return new Encoding(versions, tileData, bitmasks, offsets, tileDataOut != null);
+    }
+
+    private static void writeAtomically(Path filePath, Encoding encoding, RomChecksum.Mode checksumMode, Progress progress) {
+        Path target = filePath.toAbsolutePath();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            Files.copy(target, temp, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // Diff against the file itself, as it may have been rebuilt since it was loaded
+                byte[] tileData = read(out, START_OF_TILE_DATA, MAX_TILE_DATA_LENGTH);
+                byte[] bitmasks = read(out, START_OF_TILE_BITMASK, encoding.bitmasks.length);
+                int delta = writeChanges(out, tileData, encoding.tileData, START_OF_TILE_DATA)
+                        + writeChanges(out, bitmasks, encoding.bitmasks, START_OF_TILE_BITMASK);
+                int checksum = checksumMode == RomChecksum.Mode.FULL
+                        ? RomChecksum.compute(out)
+                        : RomChecksum.update(RomChecksum.read(out), delta);
+                RomChecksum.write(out, checksum);
+                out.force(true);
+            }
+            checkCancelled(progress);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temp = null;
         } catch (IOException e) {
-            throw new MessageException("Saving failed.");
+            throw new MessageException("Saving failed.", e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static int writeChanges(FileChannel out, byte[] before, byte[] after, long position) throws IOException {
+        int delta = 0;
+        int i = 0;
+        while (i < after.length) {
+            if (before[i] == after[i]) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < after.length && before[i] != after[i]) {
+                i++;
+            }
+            write(out, ByteBuffer.wrap(after, start, i - start), position);
+            delta += RomChecksum.delta(ByteBuffer.wrap(before), start, after, start, i - start);
+        }
+        return delta;
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.array();
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer, position + buffer.position());
         }
     }
 
     @Override
     public Iterator<Tile> iterator() {
-        return tiles.iterator();
+        return tiles().iterator();
     }
 
-    private static Collector<byte[], ?, byte[]> concatArrays() {
-        return collectingAndThen(toList(), Font::concat);
+    private static final class Encoding {
+        private final long[] versions;
+        private final byte[] tileData;
+        private final byte[] bitmasks;
+        private final int[] offsets;
+        private final boolean changed;
+
+        private Encoding(long[] versions, byte[] tileData, byte[] bitmasks, int[] offsets, boolean changed) {
+            this.versions = versions;
+            this.tileData = tileData;
+            this.bitmasks = bitmasks;
+            this.offsets = offsets;
+            this.changed = changed;
+        }
     }
 
-    private static byte[] concat(List<byte[]> arrays) {
-        int totalLength = arrays.stream().mapToInt(i -> i.length).sum();
-        byte[] joined = new byte[totalLength];
-        int i = 0;
-        for (byte[] array : arrays) {
-            arraycopy(array, 0, joined, i, array.length);
-            i += array.length;
+    private static final class Reload {
+        private final TileIndex index;
+        private final byte[] baseTileData;
+        private final byte[] baseBitmasks;
+        private final byte[] tileData;
+        private final byte[] bitmasks;
+        private final int[] offsets;
+        private final BitSet changed;
+
+        private Reload(TileIndex index, byte[] baseTileData, byte[] baseBitmasks, byte[] tileData, byte[] bitmasks, int[] offsets, BitSet changed) {
+            this.index = index;
+            this.baseTileData = baseTileData;
+            this.baseBitmasks = baseBitmasks;
+            this.tileData = tileData;
+            this.bitmasks = bitmasks;
+            this.offsets = offsets;
+            this.changed = changed;
         }
-        return joined;
     }
 }
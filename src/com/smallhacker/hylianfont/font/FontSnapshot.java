@@ -0,0 +1,43 @@
+package com.smallhacker.hylianfont.font;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+public final class FontSnapshot implements Iterable<Tile> {
+    private final long version;
+    private final Tile[] tiles;
+
+    FontSnapshot(long version, Tile[] tiles) {
+        this.version = version;
+        this.tiles = tiles;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public Tile getTile(int index) {
+        return tiles[index];
+    }
+
+    public int size() {
+        return tiles.length;
+    }
+
+    public int getRemainingBudget() {
+        int encodedSize = 0;
+        for (Tile tile : tiles) {
+            encodedSize += tile.encodedSize();
+        }
+        return Font.MAX_TILE_DATA_LENGTH - encodedSize;
+    }
+
+    Tile[] tiles() {
+        return tiles;
+    }
+
+    @Override
+    public Iterator<Tile> iterator() {
+        return Arrays.asList(tiles).iterator();
+    }
+}
@@ -0,0 +1,81 @@
+package com.smallhacker.hylianfont.font;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+public final class FontWatcher implements Closeable {
+    private static final long SETTLE_MILLIS = 50;
+
+    private final Path fileName;
+    private final WatchService service;
+    private final Runnable onChange;
+
+    private FontWatcher(Path filePath, Runnable onChange) throws IOException {
+        Path target = filePath.toAbsolutePath();
+        this.fileName = target.getFileName();
+        this.service = target.getFileSystem().newWatchService();
+        this.onChange = onChange;
+
+        target.getParent().register(
+                service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY
+        );
+    }
+
+    static FontWatcher start(Path filePath, Runnable onChange) {
+        try {
+            FontWatcher watcher = new FontWatcher(filePath, onChange);
+            Thread thread = new Thread(watcher::run, "Font watcher");
+            thread.setDaemon(true);
+            thread.start();
+            return watcher;
+        } catch (IOException e) {
+            throw new MessageException("Failed to watch file.", e);
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!affectsFile(service.take())) {
+                    continue;
+                }
+
+                // Tools tend to write in several chunks; wait for the file to settle before reporting it
+                WatchKey key;
+                while ((key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    affectsFile(key);
+                }
+                onChange.run();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    private boolean affectsFile(WatchKey key) {
+        boolean affected = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                affected = true;
+            }
+        }
+        key.reset();
+        return affected;
+    }
+
+    @Override
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
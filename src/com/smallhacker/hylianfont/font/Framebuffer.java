@@ -0,0 +1,53 @@
+package com.smallhacker.hylianfont.font;
+
+import java.util.Arrays;
+
+public final class Framebuffer {
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    public Framebuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public void clear() {
+        Arrays.fill(pixels, 0);
+    }
+
+    public int getArgb(int x, int y) {
+        return pixels[x + y * width];
+    }
+
+    public void setArgb(int x, int y, int argb) {
+        if (x >= 0 && y >= 0 && x < width && y < height) {
+            pixels[x + y * width] = argb;
+        }
+    }
+
+    public void setPixels(int x, int y, int width, int height, int[] source, int offset, int stride) {
+        int left = Math.max(x, 0);
+        int top = Math.max(y, 0);
+        int right = Math.min(x + width, this.width);
+        int bottom = Math.min(y + height, this.height);
+
+        for (int py = top; py < bottom && left < right; py++) {
+            int sourceOffset = offset + (left - x) + (py - y) * stride;
+            System.arraycopy(source, sourceOffset, pixels, py * this.width + left, right - left);
+        }
+    }
+}
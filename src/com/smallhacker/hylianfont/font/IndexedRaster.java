@@ -0,0 +1,80 @@
+package com.smallhacker.hylianfont.font;
+
+import java.util.Arrays;
+
+public final class IndexedRaster {
+    static final byte DARKER = 4;
+    static final byte BORDER = 8;
+    static final byte BLANK = 9;
+
+    private static final int BORDER_ARGB = 0xFFFF0000;
+    private static final int BLANK_ARGB = 0x00000000;
+
+    private final int width;
+    private final int height;
+    private final byte[] indices;
+
+    private Palette tablePalette;
+    private int[] colorTable;
+
+    public IndexedRaster(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.indices = new byte[width * height];
+        clear();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public byte[] getIndices() {
+        return indices;
+    }
+
+    public void clear() {
+        Arrays.fill(indices, BLANK);
+    }
+
+    public void present(Framebuffer framebuffer, Palette palette) {
+        present(framebuffer, palette, 0, 0, width, height);
+    }
+
+    public void present(Framebuffer framebuffer, Palette palette, int x, int y, int width, int height) {
+        int left = Math.max(x, 0);
+        int top = Math.max(y, 0);
+        int right = Math.min(x + width, Math.min(this.width, framebuffer.getWidth()));
+        int bottom = Math.min(y + height, Math.min(this.height, framebuffer.getHeight()));
+
+        int[] table = getColorTable(palette);
+        int[] pixels = framebuffer.getPixels();
+        for (int py = top; py < bottom; py++) {
+            int source = py * this.width;
+            int target = py * framebuffer.getWidth();
+            for (int px = left; px < right; px++) {
+                pixels[target + px] = table[indices[source + px]];
+            }
+        }
+    }
+
+    public int[] getColorTable(Palette palette) {
+        if (palette != tablePalette) {
+            int colors = palette.getBpp();
+            int[] table = new int[BLANK + 1];
+            for (int i = 0; i < colors; i++) {
+                table[i] = palette.getArgb(i);
+                table[i + DARKER] = palette.getDarkerArgb(i);
+            }
+            table[BORDER] = BORDER_ARGB;
+            table[BLANK] = BLANK_ARGB;
+
+            colorTable = table;
+            tablePalette = palette;
+        }
+        return colorTable;
+    }
+}
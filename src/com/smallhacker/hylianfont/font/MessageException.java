@@ -1,4 +1,4 @@
-package com.smallhacker.hylianfont.app;
+package com.smallhacker.hylianfont.font;
 
 public final class MessageException extends RuntimeException {
     public MessageException(String message) {
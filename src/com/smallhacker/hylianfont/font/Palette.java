@@ -1,20 +1,24 @@
 package com.smallhacker.hylianfont.font;
 
-import javafx.scene.paint.Color;
-
 import java.util.Arrays;
 
 public final class Palette {
+    private static final double DARKER_FACTOR = 0.7;
+
     private final String name;
     private final int bpp;
-    private final Color[] palette;
+    private final int[] argb;
+    private final int[] darkerArgb;
 
     public Palette(String name, int... palette) {
         this.name = name;
         this.bpp = palette.length;
-        this.palette = Arrays.stream(palette)
-                .mapToObj(Palette::toColor)
-                .toArray(Color[]::new);
+        this.argb = Arrays.stream(palette)
+                .map(rgb -> 0xFF000000 | rgb)
+                .toArray();
+        this.darkerArgb = Arrays.stream(this.argb)
+                .map(Palette::darker)
+                .toArray();
     }
 
     public String getName() {
@@ -25,19 +29,30 @@ public final class Palette {
         return bpp;
     }
 
-    public Color getColor(int index) {
+    public int getArgb(int index) {
+        if (index < 0 || index >= bpp) {
+            throw new IllegalArgumentException();
+        }
+
+        return argb[index];
+    }
+
+    public int getDarkerArgb(int index) {
         if (index < 0 || index >= bpp) {
             throw new IllegalArgumentException();
         }
 
-        return palette[index];
+        return darkerArgb[index];
+    }
+
+    private static int darker(int argb) {
+        return (argb & 0xFF000000)
+                | (darkerComponent(argb >> 16) << 16)
+                | (darkerComponent(argb >> 8) << 8)
+                | darkerComponent(argb);
     }
 
-    private static Color toColor(int intColor) {
-        return Color.rgb(
-                (intColor >> 16) & 0xFF,
-                (intColor >> 8) & 0xFF,
-                intColor & 0xFF
-        );
+    private static int darkerComponent(int component) {
+        return (int) Math.round((component & 0xFF) * DARKER_FACTOR);
     }
 }
@@ -0,0 +1,26 @@
+package com.smallhacker.hylianfont.font;
+
+import java.util.Arrays;
+import java.util.List;
+
+public final class Palettes {
+    public static final List<Palette> ALL = Arrays.asList(
+            new Palette("Text Boxes", 0x008888, 0x000073, 0xFFFFFF, 0xC60000),
+            new Palette("Ending: Green", 0x008888, 0x000000, 0x29FF5A, 0x000000),
+            new Palette("Ending: Yellow", 0x008888, 0x000000, 0xFFC639, 0x000000),
+            new Palette("Ending: Red", 0x008888, 0x000073, 0xF75239, 0x000000),
+            new Palette("Ending: White", 0x008888, 0x000000, 0xFFFFFF, 0x000000),
+            new Palette("File Select", 0x000000, 0x000000, 0xFFFFFF, 0x000000)
+
+    );
+
+    private Palettes() {
+    }
+
+    public static Palette byName(String name) {
+        return ALL.stream()
+                .filter(palette -> palette.getName().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new MessageException("Unknown palette: " + name));
+    }
+}
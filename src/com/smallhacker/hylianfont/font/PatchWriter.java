@@ -0,0 +1,213 @@
+package com.smallhacker.hylianfont.font;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+public final class PatchWriter {
+    private static final int IPS_MAX_OFFSET = 0xFFFFFF;
+    private static final int IPS_MAX_RECORD = 0xFFFF;
+    private static final int IPS_EOF = 0x454F46;
+
+    private PatchWriter() {
+    }
+
+    public enum Format {
+        IPS("ips", 5),
+        BPS("bps", 2);
+
+        private final String extension;
+        private final int mergeGap;
+
+        Format(String extension, int mergeGap) {
+            this.extension = extension;
+            this.mergeGap = mergeGap;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        int getMergeGap() {
+            return mergeGap;
+        }
+
+        byte[] write(ByteBuffer original, List<Run> runs) {
+            return this == IPS ? ips(original, runs) : bps(original, runs);
+        }
+
+        public static Format forFileName(String fileName) {
+            String name = fileName.toLowerCase(Locale.ROOT);
+            for (Format format : values()) {
+                if (name.endsWith("." + format.extension)) {
+                    return format;
+                }
+            }
+            throw new MessageException("Unknown patch format: " + fileName);
+        }
+    }
+
+    static final class Run {
+        private final int offset;
+        private final byte[] data;
+        private final int dataOffset;
+        private int length;
+
+        private Run(int offset, byte[] data, int dataOffset, int length) {
+            this.offset = offset;
+            this.data = data;
+            this.dataOffset = dataOffset;
+            this.length = length;
+        }
+    }
+
+    static void diff(ByteBuffer original, int position, byte[] data, int mergeGap, List<Run> runs) {
+        ByteBuffer updated = ByteBuffer.wrap(data).order(original.order());
+        int i = 0;
+        while (i < data.length) {
+            if (i + Long.BYTES <= data.length && original.getLong(position + i) == updated.getLong(i)) {
+                i += Long.BYTES;
+                continue;
+            }
+            if (original.get(position + i) == data[i]) {
+                i++;
+                continue;
+            }
+
+            int start = i;
+            while (i < data.length && original.get(position + i) != data[i]) {
+                i++;
+            }
+
+            Run previous = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+            if (previous != null && previous.data == data && start - (previous.dataOffset + previous.length) <= mergeGap) {
+                previous.length = i - previous.dataOffset;
+            } else {
+                runs.add(new Run(position + start, data, start, i - start));
+            }
+        }
+    }
+
+    static void updateChecksum(ByteBuffer original, List<Run> runs) {
+        int delta = 0;
+        for (Run run : runs) {
+            delta += RomChecksum.delta(original, run.offset, run.data, run.dataOffset, run.length);
+        }
+        if (delta == 0) {
+            return;
+        }
+
+        int checksum = RomChecksum.update(RomChecksum.read(original), delta);
+        byte[] header = RomChecksum.header(checksum);
+        List<Run> headerRuns = new ArrayList<>();
+        diff(original, RomChecksum.COMPLEMENT_OFFSET, header, RomChecksum.HEADER_LENGTH, headerRuns);
+        runs.addAll(0, headerRuns);
+    }
+
+    private static byte[] ips(ByteBuffer original, List<Run> runs) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('P');
+        out.write('A');
+        out.write('T');
+        out.write('C');
+        out.write('H');
+        for (Run run : runs) {
+            for (int done = 0; done < run.length; ) {
+                int offset = run.offset + done;
+                int length = Math.min(run.length - done, IPS_MAX_RECORD);
+                if (offset == IPS_EOF) {
+                    offset--;
+                    length = Math.min(length, IPS_MAX_RECORD - 1);
+                    ipsRecord(out, offset, length + 1);
+                    out.write(original.get(offset));
+                } else {
+                    ipsRecord(out, offset, length);
+                }
+                out.write(run.data, run.dataOffset + done, length);
+                done += length;
+            }
+        }
+        out.write('E');
+        out.write('O');
+        out.write('F');
+        return out.toByteArray();
+    }
+
+    private static void ipsRecord(ByteArrayOutputStream out, int offset, int length) {
+        if (offset > IPS_MAX_OFFSET) {
+            throw new MessageException(String.format("IPS patches cannot address offset 0x%X.", offset));
+        }
+        out.write(offset >> 16);
+        out.write(offset >> 8);
+        out.write(offset);
+        out.write(length >> 8);
+        out.write(length);
+    }
+
+    private static byte[] bps(ByteBuffer original, List<Run> runs) {
+        int size = original.capacity();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("BPS1".getBytes(StandardCharsets.US_ASCII), 0, 4);
+        bpsNumber(out, size);
+        bpsNumber(out, size);
+        bpsNumber(out, 0);
+
+        CRC32 sourceCrc = new CRC32();
+        CRC32 targetCrc = new CRC32();
+        int outputOffset = 0;
+        for (Run run : runs) {
+            int unchanged = run.offset - outputOffset;
+            if (unchanged > 0) {
+                bpsNumber(out, ((long) (unchanged - 1) << 2));
+                targetCrc.update(slice(original, outputOffset, unchanged));
+            }
+            bpsNumber(out, ((long) (run.length - 1) << 2) | 1);
+            out.write(run.data, run.dataOffset, run.length);
+            targetCrc.update(run.data, run.dataOffset, run.length);
+            outputOffset = run.offset + run.length;
+        }
+        if (outputOffset < size) {
+            bpsNumber(out, ((long) (size - outputOffset - 1) << 2));
+            targetCrc.update(slice(original, outputOffset, size - outputOffset));
+        }
+
+        sourceCrc.update(slice(original, 0, size));
+        writeCrc(out, sourceCrc.getValue());
+        writeCrc(out, targetCrc.getValue());
+        CRC32 patchCrc = new CRC32();
+        patchCrc.update(out.toByteArray());
+        writeCrc(out, patchCrc.getValue());
+        return out.toByteArray();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(position);
+        slice.limit(position + length);
+        return slice;
+    }
+
+    private static void bpsNumber(ByteArrayOutputStream out, long number) {
+        while (true) {
+            int bits = (int) (number & 0x7F);
+            number >>= 7;
+            if (number == 0) {
+                out.write(0x80 | bits);
+                return;
+            }
+            out.write(bits);
+            number--;
+        }
+    }
+
+    private static void writeCrc(ByteArrayOutputStream out, long crc) {
+        out.write((int) crc);
+        out.write((int) (crc >> 8));
+        out.write((int) (crc >> 16));
+        out.write((int) (crc >> 24));
+    }
+}
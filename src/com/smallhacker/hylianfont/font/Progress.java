@@ -0,0 +1,18 @@
+package com.smallhacker.hylianfont.font;
+
+public interface Progress {
+    Progress NONE = new Progress() {
+        @Override
+        public void update(int done, int total) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    void update(int done, int total);
+
+    boolean isCancelled();
+}
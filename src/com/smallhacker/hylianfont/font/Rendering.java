@@ -2,11 +2,17 @@ package com.smallhacker.hylianfont.font;
 
 public final class Rendering {
     private final int scale;
+    private final int zoom;
     private final Mode mode;
     private final Palette palette;
 
     public Rendering(int scale, Mode mode, Palette palette) {
+        this(scale, 1, mode, palette);
+    }
+
+    private Rendering(int scale, int zoom, Mode mode, Palette palette) {
         this.scale = scale;
+        this.zoom = zoom;
         this.mode = mode;
         this.palette = palette;
     }
@@ -15,6 +21,14 @@ public final class Rendering {
         return scale;
     }
 
+    public int getZoom() {
+        return zoom;
+    }
+
+    public int getDisplayScale() {
+        return scale * zoom;
+    }
+
     public Mode getMode() {
         return mode;
     }
@@ -24,11 +38,15 @@ public final class Rendering {
     }
 
     public Rendering withMode(Mode mode) {
-        return new Rendering(scale, mode, palette);
+        return new Rendering(scale, zoom, mode, palette);
     }
 
     public Rendering withPalette(Palette palette) {
-        return new Rendering(scale, mode, palette);
+        return new Rendering(scale, zoom, mode, palette);
+    }
+
+    public Rendering atNativeResolution() {
+        return new Rendering(1, getDisplayScale(), mode, palette);
     }
 
     public int getWidth() {
@@ -47,6 +65,14 @@ public final class Rendering {
         return mode.height * scale;
     }
 
+    public int getDisplayWidth() {
+        return getScaledWidth() * zoom;
+    }
+
+    public int getDisplayHeight() {
+        return getScaledHeight() * zoom;
+    }
+
     public int getOriginX() {
         return mode.baseX;
     }
@@ -65,5 +91,13 @@ public final class Rendering {
             this.height = height;
             this.baseX = baseX;
         }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
     }
 }
@@ -0,0 +1,103 @@
+package com.smallhacker.hylianfont.font;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class RomChecksum {
+    static final int COMPLEMENT_OFFSET = 0x7FDC;
+    static final int CHECKSUM_OFFSET = 0x7FDE;
+    static final int HEADER_LENGTH = 4;
+
+    public enum Mode {
+        INCREMENTAL,
+        FULL
+    }
+
+    private RomChecksum() {
+    }
+
+    static int read(ByteBuffer rom) {
+        return Short.toUnsignedInt(rom.duplicate().order(ByteOrder.LITTLE_ENDIAN).getShort(CHECKSUM_OFFSET));
+    }
+
+    static int read(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        while (header.hasRemaining()) {
+            if (channel.read(header, COMPLEMENT_OFFSET + header.position()) < 0) {
+                throw new MessageException("File is too small to contain a header.");
+            }
+        }
+        return Short.toUnsignedInt(header.order(ByteOrder.LITTLE_ENDIAN).getShort(CHECKSUM_OFFSET - COMPLEMENT_OFFSET));
+    }
+
+    static byte[] header(int checksum) {
+        return ByteBuffer.allocate(HEADER_LENGTH)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .putShort((short) (checksum ^ 0xFFFF))
+                .putShort((short) checksum)
+                .array();
+    }
+
+    static void write(FileChannel channel, int checksum) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(header(checksum));
+        while (header.hasRemaining()) {
+            channel.write(header, COMPLEMENT_OFFSET + header.position());
+        }
+    }
+
+    static int update(int checksum, int delta) {
+        return (checksum + delta) & 0xFFFF;
+    }
+
+    static int delta(ByteBuffer before, int position, byte[] after, int offset, int length) {
+        int delta = 0;
+        for (int i = 0; i < length; i++) {
+            delta += (after[offset + i] & 0xFF) - (before.get(position + i) & 0xFF);
+        }
+        return delta;
+    }
+
+    static int compute(ByteBuffer rom) {
+        ByteBuffer bytes = rom.duplicate();
+        bytes.clear();
+        int size = bytes.capacity();
+        int base = Integer.highestOneBit(size);
+        long sum = sum(bytes, 0, base);
+        int mirrored = size - base;
+        if (mirrored > 0) {
+            sum += sum(bytes, base, mirrored) * (base / mirrored);
+        }
+        return (int) (sum & 0xFFFF);
+    }
+
+    private static long sum(ByteBuffer bytes, int offset, int length) {
+        long sum = 0;
+        int end = offset + length;
+        int i = offset;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            long word = bytes.getLong(i);
+            long pairs = (word & 0x00FF_00FF_00FF_00FFL) + ((word >>> 8) & 0x00FF_00FF_00FF_00FFL);
+            sum += (pairs * 0x0001_0001_0001_0001L) >>> 48;
+        }
+        for (; i < end; i++) {
+            sum += bytes.get(i) & 0xFF;
+        }
+        return sum;
+    }
+
+    static int compute(FileChannel channel) throws IOException {
+        return compute(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+
+    public static boolean verify(Path filePath) {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            return compute(channel) == read(channel);
+        } catch (IOException e) {
+            throw new MessageException("Failed to read file.", e);
+        }
+    }
+}
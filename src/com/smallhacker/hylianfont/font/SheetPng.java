@@ -0,0 +1,268 @@
+package com.smallhacker.hylianfont.font;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static java.util.stream.Collectors.toList;
+
+public final class SheetPng {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int BIT_DEPTH = 2;
+    private static final int COLOR_TYPE_INDEXED = 3;
+    private static final int PIXELS_PER_BYTE = 8 / BIT_DEPTH;
+    private static final int MAX_CHUNK_LENGTH = 1 << 16;
+    private static final int ADLER_BASE = 65521;
+
+    private SheetPng() {
+    }
+
+    public static void write(FontSnapshot snapshot, Rendering rendering, Path path) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            write(snapshot, rendering, out);
+        }
+    }
+
+    public static void write(FontSnapshot snapshot, Rendering rendering, OutputStream output) throws IOException {
+        int width = TileSheet.getWidth(rendering);
+        int height = TileSheet.getHeight(rendering);
+        DataOutputStream out = new DataOutputStream(output);
+        out.write(SIGNATURE);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(width);
+        headerData.writeInt(height);
+        headerData.writeByte(BIT_DEPTH);
+        headerData.writeByte(COLOR_TYPE_INDEXED);
+        headerData.writeByte(0);
+        headerData.writeByte(0);
+        headerData.writeByte(0);
+        chunk(out, "IHDR", header.toByteArray(), header.size());
+
+        Palette palette = rendering.getPalette();
+        byte[] colors = new byte[palette.getBpp() * 3];
+        for (int i = 0; i < palette.getBpp(); i++) {
+            int argb = palette.getArgb(i);
+            colors[i * 3] = (byte) (argb >> 16);
+            colors[i * 3 + 1] = (byte) (argb >> 8);
+            colors[i * 3 + 2] = (byte) argb;
+        }
+        chunk(out, "PLTE", colors, colors.length);
+
+        List<Band> bands = IntStream.range(0, TileSheet.HEIGHT_IN_TILES)
+                .parallel()
+                .mapToObj(band -> compress(snapshot, rendering, band))
+                .collect(toList());
+
+        long adler = 1;
+        ByteArrayOutputStream data = new ByteArrayOutputStream(MAX_CHUNK_LENGTH);
+        data.write(0x78);
+        data.write(0x9C);
+        for (Band band : bands) {
+            adler = combineAdler(adler, band.adler, band.length);
+            for (int offset = 0; offset < band.compressed.length; ) {
+                int length = Math.min(band.compressed.length - offset, MAX_CHUNK_LENGTH - data.size());
+                data.write(band.compressed, offset, length);
+                offset += length;
+                if (data.size() == MAX_CHUNK_LENGTH) {
+                    chunk(out, "IDAT", data.toByteArray(), data.size());
+                    data.reset();
+                }
+            }
+        }
+        new DataOutputStream(data).writeInt((int) adler);
+        chunk(out, "IDAT", data.toByteArray(), data.size());
+        chunk(out, "IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    private static Band compress(FontSnapshot snapshot, Rendering rendering, int band) {
+        int scale = rendering.getScale();
+        int tileWidth = rendering.getWidth();
+        int pixels = TileSheet.WIDTH_IN_TILES * tileWidth;
+        byte[] indices = new byte[pixels];
+        byte[] scanline = new byte[1 + (pixels * scale + PIXELS_PER_BYTE - 1) / PIXELS_PER_BYTE];
+
+        boolean last = band == TileSheet.HEIGHT_IN_TILES - 1;
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        Adler32 adler = new Adler32();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        long length = 0;
+        try {
+            for (int y = 0; y < rendering.getHeight(); y++) {
+                for (int column = 0; column < TileSheet.WIDTH_IN_TILES; column++) {
+                    Tile tile = snapshot.getTile(band * TileSheet.WIDTH_IN_TILES + column);
+                    for (int x = 0; x < tileWidth; x++) {
+                        indices[column * tileWidth + x] = tile.get(rendering.getOriginX() + x, y);
+                    }
+                }
+                pack(indices, scale, scanline);
+
+                for (int row = 0; row < scale; row++) {
+                    adler.update(scanline);
+                    length += scanline.length;
+                    deflater.setInput(scanline);
+                    while (!deflater.needsInput()) {
+                        compressed.write(buffer, 0, deflater.deflate(buffer));
+                    }
+                }
+            }
+
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int written;
+                do {
+                    written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, written);
+                } while (written == buffer.length);
+            }
+        } finally {
+            deflater.end();
+        }
+        return new Band(compressed.toByteArray(), adler.getValue(), length);
+    }
+
+    private static void pack(byte[] indices, int scale, byte[] scanline) {
+        scanline[0] = 0;
+        int packed = 0;
+        int bits = 0;
+        int position = 1;
+        for (byte index : indices) {
+            for (int i = 0; i < scale; i++) {
+                packed = (packed << BIT_DEPTH) | index;
+                bits += BIT_DEPTH;
+                if (bits == 8) {
+                    scanline[position++] = (byte) packed;
+                    packed = 0;
+                    bits = 0;
+                }
+            }
+        }
+        if (bits > 0) {
+            scanline[position] = (byte) (packed << (8 - bits));
+        }
+    }
+
+    private static long combineAdler(long first, long second, long secondLength) {
+        long remainder = secondLength % ADLER_BASE;
+        long sum1 = first & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (second & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((first >> 16) & 0xFFFF) + ((second >> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= ((long) ADLER_BASE << 1)) {
+            sum2 -= ((long) ADLER_BASE << 1);
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    private static void chunk(DataOutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    public static TileSheet.Changes readChanges(Path path, FontSnapshot snapshot, Rendering rendering) throws IOException {
+        BufferedImage image = readImage(path);
+        Palette palette = rendering.getPalette();
+        // Sheets that still carry the palette they were exported with are read by index, so duplicate colours survive
+        if (hasPalette(image, palette)) {
+            return TileSheet.quantize(toIndexedRaster(image, palette), snapshot, rendering);
+        }
+        return TileSheet.quantize(toFramebuffer(image), snapshot, rendering);
+    }
+
+    private static BufferedImage readImage(Path path) throws IOException {
+        BufferedImage image = ImageIO.read(path.toFile());
+        if (image == null) {
+            throw new MessageException("Not a readable image: " + path.getFileName());
+        }
+        return image;
+    }
+
+    private static Framebuffer toFramebuffer(BufferedImage image) {
+        Framebuffer framebuffer = new Framebuffer(image.getWidth(), image.getHeight());
+        image.getRGB(0, 0, image.getWidth(), image.getHeight(), framebuffer.getPixels(), 0, image.getWidth());
+        return framebuffer;
+    }
+
+    private static boolean hasPalette(BufferedImage image, Palette palette) {
+        if (!(image.getColorModel() instanceof IndexColorModel)) {
+            return false;
+        }
+        IndexColorModel model = (IndexColorModel) image.getColorModel();
+        if (model.getMapSize() < palette.getBpp()) {
+            return false;
+        }
+        for (int i = 0; i < palette.getBpp(); i++) {
+            if ((model.getRGB(i) & 0xFFFFFF) != (palette.getArgb(i) & 0xFFFFFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static IndexedRaster toIndexedRaster(BufferedImage image, Palette palette) {
+        int width = image.getWidth();
+        IndexedRaster raster = new IndexedRaster(width, image.getHeight());
+        byte[] indices = raster.getIndices();
+        int[] row = new int[width];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRaster().getSamples(0, y, width, 1, 0, row);
+            for (int x = 0; x < width; x++) {
+                if (row[x] >= palette.getBpp()) {
+                    throw new MessageException(
+                            String.format("Sheet uses colour index %s at %s,%s, outside the palette.", row[x], x, y)
+                    );
+                }
+                indices[x + y * width] = (byte) row[x];
+            }
+        }
+        return raster;
+    }
+
+    private static final class Band {
+        private final byte[] compressed;
+        private final long adler;
+        private final long length;
+
+        private Band(byte[] compressed, long adler, long length) {
+            this.compressed = compressed;
+            this.adler = adler;
+            this.length = length;
+        }
+    }
+}
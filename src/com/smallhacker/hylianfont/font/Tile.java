@@ -1,253 +1,586 @@
 package com.smallhacker.hylianfont.font;
 
-import javafx.scene.image.PixelWriter;
-import javafx.scene.image.WritableImage;
-import javafx.scene.paint.Color;
-
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
 
 public final class Tile {
     public static final int TILE_COUNT = 512;
 
     private static final int WIDTH = 11;
     private static final int HEIGHT = 16;
-    private static final Color BORDER_COLOR = Color.RED;
+    private static final int BORDER_ARGB = 0xFFFF0000;
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private static final int PACKED_LENGTH = 44;
+    private static final int HIDDEN_PACKED_BYTES = 4;
+    static final int MAX_ENCODED_LENGTH = PACKED_LENGTH - HIDDEN_PACKED_BYTES;
+    private static final int PACKED_ROWS = PACKED_LENGTH / 2;
+    private static final int[] PACKED_ROW = packedRows();
+    private static final int[] ROW_X = new int[PACKED_ROWS];
+    private static final int[] ROW_Y = new int[PACKED_ROWS];
+    private static final boolean[] ROW_VERTICAL = new boolean[PACKED_ROWS];
+    private static final int[] REVERSED = new int[256];
+    private static final long[] LANES = new long[16];
+    private static final long LANE_BIT_MASK = 0x0001_0001_0001_0001L;
+    private static final long LANE_GATHER = 0x0001_0002_0004_0008L;
+
+    private static final int LANE_BITS = 16;
+    private static final int ROWS_PER_WORD = 64 / LANE_BITS;
+    private static final int WORDS_PER_PLANE = HEIGHT / ROWS_PER_WORD;
+    private static final long LANE_MASK = laneMask(WIDTH);
 
     private final int index;
-    private final byte[] pixels;
-
-    private Tile(int index, byte[] pixels) {
+    private final long[] planes;
+    private final int base;
+    private final byte[] planeBits;
+    private final int planeBitsBase;
+    private final boolean readOnly;
+    private volatile long version;
+    private int encodedSize;
+    private IntConsumer onEncodedSizeChange;
+
+    private Tile(int index, TileStore store) {
         this.index = index;
-        this.pixels = pixels;
+        this.planes = store.planes;
+        this.base = index * TileStore.WORDS_PER_TILE;
+        this.planeBits = store.planeBits;
+        this.planeBitsBase = index * TileStore.PLANE_BITS_PER_TILE;
+        this.readOnly = false;
+        this.version = VERSIONS.incrementAndGet();
+        countPlaneBits();
+    }
+
+    private Tile(Tile source) {
+        this.index = source.index;
+        this.planes = Arrays.copyOfRange(source.planes, source.base, source.base + TileStore.WORDS_PER_TILE);
+        this.base = 0;
+        this.planeBits = Arrays.copyOfRange(source.planeBits, source.planeBitsBase, source.planeBitsBase + PACKED_LENGTH);
+        this.planeBitsBase = 0;
+        this.readOnly = true;
+        this.version = source.version;
+        this.encodedSize = source.encodedSize;
+    }
+
+    Tile snapshot() {
+        return readOnly ? this : new Tile(this);
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("Tile snapshots are read-only.");
+        }
+    }
+
+    static {
+        for (int row = 0; row < PACKED_ROWS; row++) {
+            int first = toCoords(row, 0);
+            ROW_X[row] = first % WIDTH;
+            ROW_Y[row] = first / WIDTH;
+            ROW_VERTICAL[row] = toCoords(row, 1) - first == WIDTH;
+        }
+        for (int b = 0; b < REVERSED.length; b++) {
+            REVERSED[b] = Integer.reverse(b) >>> 24;
+        }
+        for (int nibble = 0; nibble < LANES.length; nibble++) {
+            for (int lane = 0; lane < ROWS_PER_WORD; lane++) {
+                if (((nibble >> lane) & 1) != 0) {
+                    LANES[nibble] |= 1L << (lane * LANE_BITS);
+                }
+            }
+        }
+    }
+
+    private static int[] packedRows() {
+        int[] rows = new int[WIDTH * HEIGHT];
+        for (int row = 0; row < PACKED_LENGTH / 2; row++) {
+            for (int bit = 0; bit < 8; bit++) {
+                rows[toCoords(row, bit)] = row;
+            }
+        }
+        return rows;
     }
 
     public int index() {
         return index;
     }
 
+    public long version() {
+        return version;
+    }
+
     public byte get(int x, int y) {
         if (x < 0 || y < 0 || x >= WIDTH || y >= HEIGHT) {
             throw new IllegalArgumentException();
         }
-        return pixels[coordsToIndex(x, y)];
+        return pixel(x, y);
     }
 
     public byte get(int index) {
         if (index < 0 || index >= WIDTH * HEIGHT) {
             throw new IllegalArgumentException();
         }
-        return pixels[index];
+        return pixel(index % WIDTH, index / WIDTH);
+    }
+
+    private byte pixel(int x, int y) {
+        int word = y / ROWS_PER_WORD;
+        int bit = (y % ROWS_PER_WORD) * LANE_BITS + x;
+        long low = planes[base + word] >>> bit;
+        long high = planes[base + word + WORDS_PER_PLANE] >>> bit;
+        return (byte) ((low & 1) | ((high & 1) << 1));
+    }
+
+    private static void setPixel(long[] planes, int base, int x, int y, int color) {
+        int word = base + y / ROWS_PER_WORD;
+        long mask = 1L << ((y % ROWS_PER_WORD) * LANE_BITS + x);
+        for (int plane = 0; plane < 2; plane++) {
+            int i = word + plane * WORDS_PER_PLANE;
+            if (((color >> plane) & 1) != 0) {
+                planes[i] |= mask;
+            } else {
+                planes[i] &= ~mask;
+            }
+        }
     }
 
     public boolean set(int x, int y, byte color) {
         if (color < 0 || x < 0 || y < 0 || color >= 4 || x >= WIDTH || y >= HEIGHT) {
             throw new IllegalArgumentException();
         }
-        int index = coordsToIndex(x, y);
-        byte oldColor = pixels[index];
-        pixels[index] = color;
-        return oldColor != color;
+        return set(coordsToIndex(x, y), color);
     }
 
     public boolean set(int index, byte color) {
         if (color < 0 || index < 0 || color >= 4 || index >= WIDTH * HEIGHT) {
             throw new IllegalArgumentException();
         }
-        byte oldColor = pixels[index];
-        pixels[index] = color;
-        return oldColor != color;
+        checkWritable();
+        int x = index % WIDTH;
+        int y = index / WIDTH;
+        byte oldColor = pixel(x, y);
+        if (oldColor == color) {
+            return false;
+        }
+        setPixel(planes, base, x, y, color);
+        version = VERSIONS.incrementAndGet();
+
+        int oldSize = encodedSize;
+        int packedIndex = PACKED_ROW[index] * 2;
+        for (int plane = 0; plane < 2; plane++) {
+            int oldBit = (oldColor >> plane) & 1;
+            int newBit = (color >> plane) & 1;
+            if (oldBit != newBit) {
+                updatePlaneBits(packedIndex + plane, newBit - oldBit);
+            }
+        }
+        if (encodedSize != oldSize) {
+            fireEncodedSizeChange();
+        }
+        return true;
     }
 
     public void copy(Tile source) {
-        System.arraycopy(source.pixels, 0, pixels, 0, pixels.length);
+        checkWritable();
+        System.arraycopy(source.planes, source.base, planes, base, TileStore.WORDS_PER_TILE);
+        replaced();
     }
 
-    public void render(WritableImage img, int baseX, int baseY, Rendering rendering) {
-        PixelWriter writer = img.getPixelWriter();
-
-        Palette palette = rendering.getPalette();
-        int originX = rendering.getOriginX();
-        int scale = rendering.getScale();
-        int width = rendering.getWidth();
-        int height = rendering.getHeight();
+    public boolean contentEquals(Tile other) {
+        for (int i = 0; i < TileStore.WORDS_PER_TILE; i++) {
+            if (planes[base + i] != other.planes[other.base + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        boolean masked = rendering.getMode() == Rendering.Mode.MASKED;
+    public int contentHash() {
+        int hash = 1;
+        for (int i = 0; i < TileStore.WORDS_PER_TILE; i++) {
+            hash = 31 * hash + Long.hashCode(planes[base + i]);
+        }
+        return hash;
+    }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int paletteIndex = pixels[coordsToIndex(x + originX, y)];
-                for (int x2 = 0; x2 < scale; x2++) {
-                    int px = x * scale + baseX + x2;
-                    if (px < 0 || px >= img.getWidth()) {
-                        continue;
-                    }
-                    for (int y2 = 0; y2 < scale; y2++) {
-                        int py = y * scale + baseY + y2;
-                        if (py < 0 || py >= img.getHeight()) {
-                            continue;
-                        }
-                        Color color = palette.getColor(paletteIndex);
-
-                        if (masked && (x == 0 || x > 8)) {
-                            color = color.darker();
-                        }
-
-                        writer.setColor(px, py, color);
-                    }
-                }
+    public int count(byte color) {
+        int count = 0;
+        for (int word = 0; word < WORDS_PER_PLANE; word++) {
+            long low = planes[base + word];
+            long high = planes[base + word + WORDS_PER_PLANE];
+            switch (color) {
+                case 0:
+                    count += Long.bitCount(~(low | high) & LANE_MASK);
+                    break;
+                case 1:
+                    count += Long.bitCount(low & ~high);
+                    break;
+                case 2:
+                    count += Long.bitCount(~low & high);
+                    break;
+                case 3:
+                    count += Long.bitCount(low & high);
+                    break;
+                default:
+                    throw new IllegalArgumentException();
             }
         }
+        return count;
+    }
 
-        if (masked) {
-            drawBorder(img, writer, scale);
+    public void flipHorizontally() {
+        checkWritable();
+        for (int i = base; i < base + TileStore.WORDS_PER_TILE; i++) {
+            planes[i] = (reverseLanes(Long.reverse(planes[i])) >>> (LANE_BITS - WIDTH)) & LANE_MASK;
         }
+        replaced();
     }
 
-    private void drawBorder(WritableImage img, PixelWriter writer, int scale) {
-        int x1 = scale - 1;
-        int x2 = (scale * 9);
-
-        for (int y = 0; y < img.getHeight(); y++) {
-            if (x1 < img.getWidth()) {
-                writer.setColor(x1, y, BORDER_COLOR);
-                if (x2 < img.getWidth()) {
-                    writer.setColor(x2, y, BORDER_COLOR);
-                }
+    public void flipVertically() {
+        checkWritable();
+        for (int plane = base; plane < base + TileStore.WORDS_PER_TILE; plane += WORDS_PER_PLANE) {
+            for (int word = 0; word < WORDS_PER_PLANE / 2; word++) {
+                int a = plane + word;
+                int b = plane + WORDS_PER_PLANE - 1 - word;
+                long first = planes[a];
+                planes[a] = reverseLanes(planes[b]);
+                planes[b] = reverseLanes(first);
             }
         }
+        replaced();
     }
 
-    static List<Tile> load(byte[] file, int startOfTileData, int startOfTileBitmask) {
-        int tilePointer = startOfTileData;
-        int bitmaskPointer = startOfTileBitmask;
+    public void shift(int dx, int dy) {
+        checkWritable();
+        for (int i = base; i < base + TileStore.WORDS_PER_TILE; i++) {
+            if (Math.abs(dx) >= WIDTH) {
+                planes[i] = 0;
+            } else if (dx > 0) {
+                planes[i] = (planes[i] & laneMask(WIDTH - dx)) << dx;
+            } else if (dx < 0) {
+                planes[i] = (planes[i] >>> -dx) & laneMask(WIDTH + dx);
+            }
+        }
 
-        List<Tile> tiles = new ArrayList<>();
+        if (dy != 0) {
+            for (int plane = base; plane < base + TileStore.WORDS_PER_TILE; plane += WORDS_PER_PLANE) {
+                shiftRows(plane, dy);
+            }
+        }
+        replaced();
+    }
 
-        for (int tile = 0; tile < TILE_COUNT; tile++) {
-            long bitmask = 0;
-            for (int i = 0; i < 5; i++) {
-                bitmask <<= 8;
-                bitmask |= Byte.toUnsignedInt(file[bitmaskPointer++]);
+    private void shiftRows(int plane, int dy) {
+        long[] shifted = new long[WORDS_PER_PLANE];
+        for (int y = 0; y < HEIGHT; y++) {
+            int source = y - dy;
+            if (source >= 0 && source < HEIGHT) {
+                long row = (planes[plane + source / ROWS_PER_WORD] >>> ((source % ROWS_PER_WORD) * LANE_BITS)) & 0xFFFF;
+                shifted[y / ROWS_PER_WORD] |= row << ((y % ROWS_PER_WORD) * LANE_BITS);
             }
+        }
+        System.arraycopy(shifted, 0, planes, plane, WORDS_PER_PLANE);
+    }
 
-            byte[] packed = new byte[44];
+    private static long laneMask(int bits) {
+        return ((1L << bits) - 1) * LANE_BIT_MASK;
+    }
+
+    private static long reverseLanes(long word) {
+        return (word >>> 48)
+                | ((word >>> 16) & 0xFFFF_0000L)
+                | ((word << 16) & 0xFFFF_0000_0000L)
+                | (word << 48);
+    }
+
+    private void replaced() {
+        version = VERSIONS.incrementAndGet();
+
+        int oldSize = encodedSize;
+        countPlaneBits();
+        if (encodedSize != oldSize) {
+            fireEncodedSizeChange();
+        }
+    }
+
+    public int encodedSize() {
+        return encodedSize;
+    }
+
+    void onEncodedSizeChange(IntConsumer listener) {
+        this.onEncodedSizeChange = listener;
+    }
 
-            for (int i = 0; i < 40; i++) {
-                if ((bitmask & 0x80_0000_0000L) != 0) {
-                    packed[i + 4] = file[tilePointer++];
+    private void fireEncodedSizeChange() {
+        if (onEncodedSizeChange != null) {
+            onEncodedSizeChange.accept(encodedSize);
+        }
+    }
+
+    private void countPlaneBits() {
+        encodedSize = 0;
+        for (int row = 0; row < PACKED_ROWS; row++) {
+            int packedRow = packRow(row);
+            for (int plane = 0; plane < 2; plane++) {
+                int packedIndex = row * 2 + plane;
+                int bits = Integer.bitCount((packedRow >>> (plane * 8)) & 0xFF);
+                planeBits[planeBitsBase + packedIndex] = (byte) bits;
+                if (packedIndex >= HIDDEN_PACKED_BYTES && bits != 0) {
+                    encodedSize++;
                 }
-                bitmask <<= 1;
             }
+        }
+    }
+
+    private void updatePlaneBits(int packedIndex, int delta) {
+        int oldBits = planeBits[planeBitsBase + packedIndex];
+        int newBits = oldBits + delta;
+        planeBits[planeBitsBase + packedIndex] = (byte) newBits;
+        if (packedIndex >= HIDDEN_PACKED_BYTES && (oldBits == 0) != (newBits == 0)) {
+            encodedSize += delta;
+        }
+    }
+
+    public void render(Framebuffer framebuffer, int baseX, int baseY, Rendering rendering) {
+        render(framebuffer, baseX, baseY, rendering, rasterizeArgb(rendering));
+    }
 
-            byte[] unpacked = unpack(packed);
+    public void render(Framebuffer framebuffer, int baseX, int baseY, Rendering rendering, TileRasterCache<int[]> cache) {
+        render(framebuffer, baseX, baseY, rendering, cache.get(this, rendering));
+    }
+
+    private void render(Framebuffer framebuffer, int baseX, int baseY, Rendering rendering, int[] raster) {
+        int scaledWidth = rendering.getScaledWidth();
+        framebuffer.setPixels(baseX, baseY, scaledWidth, rendering.getScaledHeight(), raster, 0, scaledWidth);
 
-            tiles.add(new Tile(tile, unpacked));
+        if (rendering.getMode() == Rendering.Mode.MASKED && rendering.getScale() > 1) {
+            drawBorder(framebuffer, rendering.getScale());
         }
-        return tiles;
     }
 
-    public Output encode() {
-        byte[] packed = pack();
-        byte[] filtered = new byte[packed.length];
-        int bytes = 0;
-        long bitmask = 0;
-        for (int i = 4; i < packed.length; i++) {
-            byte b = packed[i];
-            bitmask <<= 1;
-            if (b != 0) {
-                filtered[bytes++] = b;
-                bitmask |= 1;
+    public void render(IndexedRaster raster, int baseX, int baseY, Rendering rendering) {
+        render(raster, baseX, baseY, rendering, rasterizeIndices(rendering));
+    }
+
+    public void render(IndexedRaster raster, int baseX, int baseY, Rendering rendering, TileRasterCache<byte[]> cache) {
+        render(raster, baseX, baseY, rendering, cache.get(this, rendering));
+    }
+
+    private void render(IndexedRaster raster, int baseX, int baseY, Rendering rendering, byte[] tileRaster) {
+        byte[] indices = raster.getIndices();
+        int rasterWidth = raster.getWidth();
+        int scale = rendering.getScale();
+        int scaledWidth = rendering.getScaledWidth();
+
+        int left = Math.max(baseX, 0);
+        int top = Math.max(baseY, 0);
+        int right = Math.min(baseX + scaledWidth, rasterWidth);
+        int bottom = Math.min(baseY + rendering.getScaledHeight(), raster.getHeight());
+
+        for (int py = top; py < bottom && left < right; py++) {
+            int offset = (left - baseX) + (py - baseY) * scaledWidth;
+            System.arraycopy(tileRaster, offset, indices, py * rasterWidth + left, right - left);
+        }
+
+        if (rendering.getMode() == Rendering.Mode.MASKED && scale > 1) {
+            int x1 = scale - 1;
+            int x2 = scale * 9;
+            for (int y = 0; y < raster.getHeight(); y++) {
+                if (x1 < rasterWidth) {
+                    indices[y * rasterWidth + x1] = IndexedRaster.BORDER;
+                    if (x2 < rasterWidth) {
+                        indices[y * rasterWidth + x2] = IndexedRaster.BORDER;
+                    }
+                }
             }
         }
+    }
+
+    int[] rasterizeArgb(Rendering rendering) {
+        Palette palette = rendering.getPalette();
+        int originX = rendering.getOriginX();
+        int scale = rendering.getScale();
+        int width = rendering.getWidth();
+        int height = rendering.getHeight();
+        int scaledWidth = rendering.getScaledWidth();
 
-        byte[] bitmaskBytes = new byte[5];
+        boolean masked = rendering.getMode() == Rendering.Mode.MASKED;
 
-        for (int i = 0; i < 5; i++) {
-            bitmaskBytes[i] = (byte)((bitmask >> 32) & 0xFF);
-            bitmask <<= 8;
+        int[] raster = new int[scaledWidth * rendering.getScaledHeight()];
+        for (int y = 0; y < height; y++) {
+            int scanline = y * scale * scaledWidth;
+            for (int x = 0; x < width; x++) {
+                int paletteIndex = pixel(originX + x, y);
+                int argb = (masked && (x == 0 || x > 8))
+                        ? palette.getDarkerArgb(paletteIndex)
+                        : palette.getArgb(paletteIndex);
+                Arrays.fill(raster, scanline + x * scale, scanline + (x + 1) * scale, argb);
+            }
+            for (int y2 = 1; y2 < scale; y2++) {
+                System.arraycopy(raster, scanline, raster, scanline + y2 * scaledWidth, scaledWidth);
+            }
         }
+        return raster;
+    }
 
-        byte[] shrunk = new byte[bytes];
+    byte[] rasterizeIndices(Rendering rendering) {
+        int originX = rendering.getOriginX();
+        int scale = rendering.getScale();
+        int width = rendering.getWidth();
+        int height = rendering.getHeight();
+        int scaledWidth = rendering.getScaledWidth();
 
-        System.arraycopy(filtered, 0, shrunk, 0, bytes);
+        boolean masked = rendering.getMode() == Rendering.Mode.MASKED;
 
-        return new Output(shrunk, bitmaskBytes);
+        byte[] raster = new byte[scaledWidth * rendering.getScaledHeight()];
+        for (int y = 0; y < height; y++) {
+            int scanline = y * scale * scaledWidth;
+            for (int x = 0; x < width; x++) {
+                byte index = pixel(originX + x, y);
+                if (masked && (x == 0 || x > 8)) {
+                    index += IndexedRaster.DARKER;
+                }
+                Arrays.fill(raster, scanline + x * scale, scanline + (x + 1) * scale, index);
+            }
+            for (int y2 = 1; y2 < scale; y2++) {
+                System.arraycopy(raster, scanline, raster, scanline + y2 * scaledWidth, scaledWidth);
+            }
+        }
+        return raster;
     }
 
+    private void drawBorder(Framebuffer framebuffer, int scale) {
+        int x1 = scale - 1;
+        int x2 = (scale * 9);
+
+        for (int y = 0; y < framebuffer.getHeight(); y++) {
+            framebuffer.setArgb(x1, y, BORDER_ARGB);
+            framebuffer.setArgb(x2, y, BORDER_ARGB);
+        }
+    }
 
-    private static byte[] unpack(byte[] packed) {
-        final int LENGTH = WIDTH * HEIGHT / 8;
+    static List<Tile> load(byte[] file, int startOfTileData, int startOfTileBitmask) {
+        return TileIndex.read(ByteBuffer.wrap(file), startOfTileData, startOfTileBitmask).decodeAll(new TileStore(TILE_COUNT));
+    }
 
-        byte[] unpacked = new byte[WIDTH * HEIGHT];
-        for (int i = 0; i < LENGTH; i++) {
-            byte low = packed[i * 2];
-            byte high = packed[i * 2 + 1];
-            for (int bit = 0; bit < 8; bit++) {
-                byte pixel = (byte) (((low >> 7) & 1) | ((high >> 6) & 2));
+    static Tile decode(ByteBuffer rom, int tile, int tilePointer, long bitmask, TileStore store) {
+        unpack(expand(rom, tilePointer, bitmask), store.planes, tile * TileStore.WORDS_PER_TILE);
+        return new Tile(tile, store);
+    }
 
-                int index = toCoords(i, bit);
+    void reload(ByteBuffer rom, int tilePointer, long bitmask) {
+        checkWritable();
+        unpack(expand(rom, tilePointer, bitmask), planes, base);
+        replaced();
+    }
 
-                unpacked[index] = pixel;
+    private static byte[] expand(ByteBuffer rom, int tilePointer, long bitmask) {
+        byte[] packed = new byte[44];
 
-                low <<= 1;
-                high <<= 1;
+        for (int i = 0; i < 40; i++) {
+            if ((bitmask & 0x80_0000_0000L) != 0) {
+                packed[i + 4] = rom.get(tilePointer++);
             }
+            bitmask <<= 1;
         }
-        return unpacked;
+
+        return packed;
     }
 
-    private byte[] pack() {
-        byte[] packed = new byte[44];
-        for (byte i = 0; i < 44; i += 2) {
-            byte low = 0;
-            byte high = 0;
-
-            byte x;
-            byte y;
-
-            byte j = (byte)(i / 2);
-            if (j < 11) {
-                if (j < 8) {
-                    x = 0;
-                    y = j;
-                } else {
-                    x = j;
-                    y = 0;
-                }
-            } else {
-                if (j < 19) {
-                    x = 0;
-                    y = (byte)(j - 3);
-                } else {
-                    x = (byte)(j - 11);
-                    y = 8;
+    public Output encode() {
+        ByteBuffer tileData = ByteBuffer.allocate(MAX_ENCODED_LENGTH);
+        ByteBuffer bitmask = ByteBuffer.allocate(TileIndex.BITMASK_LENGTH);
+        encode(tileData, bitmask);
+        return new Output(Arrays.copyOf(tileData.array(), tileData.position()), bitmask.array());
+    }
+
+    public void encode(ByteBuffer tileData, ByteBuffer bitmasks) {
+        long bitmask = 0;
+        for (int row = 2; row < 22; row++) {
+            int packedRow = packRow(row);
+            for (int plane = 0; plane < 2; plane++) {
+                byte b = (byte) (packedRow >> (plane * 8));
+                bitmask <<= 1;
+                if (b != 0) {
+                    tileData.put(b);
+                    bitmask |= 1;
                 }
             }
+        }
 
-            byte dx = (byte)(x == 0 ? 1 : 0);
-            byte dy = (byte)(1 - dx);
+        for (int i = 0; i < 5; i++) {
+            bitmasks.put((byte) ((bitmask >> 32) & 0xFF));
+            bitmask <<= 8;
+        }
+    }
 
-            for (int bit = 0; bit < 8; bit++) {
-                low <<= 1;
-                high <<= 1;
-                int val = get(x, y);
-                low |= (byte)(val & 1);
-                val >>= 1;
-                high |= (byte)(val & 1);
 
-                x += dx;
-                y += dy;
+    static long[] unpack(byte[] packed) {
+        long[] unpacked = new long[TileStore.WORDS_PER_TILE];
+        unpack(packed, unpacked, 0);
+        return unpacked;
+    }
 
+    private static void unpack(byte[] packed, long[] unpacked, int base) {
+        Arrays.fill(unpacked, base, base + TileStore.WORDS_PER_TILE, 0);
+        for (int row = 0; row < PACKED_ROWS; row++) {
+            int word = base + ROW_Y[row] / ROWS_PER_WORD;
+            for (int plane = 0; plane < 2; plane++) {
+                int bits = REVERSED[packed[row * 2 + plane] & 0xFF];
+                int i = word + plane * WORDS_PER_PLANE;
+                if (ROW_VERTICAL[row]) {
+                    unpacked[i] |= LANES[bits & 0xF] << ROW_X[row];
+                    unpacked[i + 1] |= LANES[bits >>> 4] << ROW_X[row];
+                } else {
+                    unpacked[i] |= (long) bits << ((ROW_Y[row] % ROWS_PER_WORD) * LANE_BITS);
+                }
             }
-            packed[i] = low;
-            packed[i + 1] = high;
+        }
+    }
 
+    byte[] pack() {
+        byte[] packed = new byte[44];
+        for (int i = 0; i < 44; i += 2) {
+            int row = packRow(i / 2);
+            packed[i] = (byte) row;
+            packed[i + 1] = (byte) (row >> 8);
         }
 
         return packed;
     }
 
+    private int packRow(int row) {
+        int word = base + ROW_Y[row] / ROWS_PER_WORD;
+        int low;
+        int high;
+        if (ROW_VERTICAL[row]) {
+            low = packColumn(word, ROW_X[row]);
+            high = packColumn(word + WORDS_PER_PLANE, ROW_X[row]);
+        } else {
+            int shift = (ROW_Y[row] % ROWS_PER_WORD) * LANE_BITS;
+            low = REVERSED[(int) (planes[word] >>> shift) & 0xFF];
+            high = REVERSED[(int) (planes[word + WORDS_PER_PLANE] >>> shift) & 0xFF];
+        }
+        return low | (high << 8);
+    }
+
+    private int packColumn(int word, int x) {
+        int top = gatherLanes(planes[word] >>> x);
+        int bottom = gatherLanes(planes[word + 1] >>> x);
+        return REVERSED[top | (bottom << 4)];
+    }
+
+    private static int gatherLanes(long word) {
+        return (int) (((word & LANE_BIT_MASK) * LANE_GATHER) >>> (64 - LANE_BITS));
+    }
+
     private static int toCoords(int row, int bit) {
         if (row < 8) {
             return coordsToIndex(bit, row);
@@ -268,7 +601,7 @@ public final class Tile {
         private final byte[] tileData;
         private final byte[] bitmask;
 
-        private Output(byte[] tileData, byte[] bitmask) {
+        Output(byte[] tileData, byte[] bitmask) {
             this.tileData = tileData;
             this.bitmask = bitmask;
         }
@@ -0,0 +1,94 @@
+package com.smallhacker.hylianfont.font;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+final class TileIndex {
+    static final int BITMASK_LENGTH = 5;
+
+    private final ByteBuffer rom;
+    private final int startOfTileBitmask;
+    private final long[] bitmasks;
+    private final int[] offsets;
+
+    private TileIndex(ByteBuffer rom, int startOfTileBitmask, long[] bitmasks, int[] offsets) {
+        this.rom = rom;
+        this.startOfTileBitmask = startOfTileBitmask;
+        this.bitmasks = bitmasks;
+        this.offsets = offsets;
+    }
+
+    static TileIndex read(ByteBuffer rom, int startOfTileData, int startOfTileBitmask) {
+        long[] bitmasks = readBitmasks(rom, startOfTileBitmask);
+        int[] offsets = dataOffsets(bitmasks, startOfTileData);
+        if (offsets[Tile.TILE_COUNT] > rom.limit()) {
+            throw new IndexOutOfBoundsException("Tile data extends past the end of the file.");
+        }
+        return new TileIndex(rom, startOfTileBitmask, bitmasks, offsets);
+    }
+
+    private static long[] readBitmasks(ByteBuffer rom, int startOfTileBitmask) {
+        int bitmaskPointer = startOfTileBitmask;
+        long[] bitmasks = new long[Tile.TILE_COUNT];
+        for (int tile = 0; tile < Tile.TILE_COUNT; tile++) {
+            long bitmask = 0;
+            for (int i = 0; i < BITMASK_LENGTH; i++) {
+                bitmask <<= 8;
+                bitmask |= Byte.toUnsignedInt(rom.get(bitmaskPointer++));
+            }
+            bitmasks[tile] = bitmask;
+        }
+        return bitmasks;
+    }
+
+    private static int[] dataOffsets(long[] bitmasks, int startOfTileData) {
+        int[] offsets = new int[bitmasks.length + 1];
+        offsets[0] = startOfTileData;
+        for (int tile = 0; tile < bitmasks.length; tile++) {
+            offsets[tile + 1] = offsets[tile] + Long.bitCount(bitmasks[tile]);
+        }
+        return offsets;
+    }
+
+    Tile decode(int tile, TileStore store) {
+        return Tile.decode(rom, tile, offsets[tile], bitmasks[tile], store);
+    }
+
+    void reload(Tile tile) {
+        tile.reload(rom, offsets[tile.index()], bitmasks[tile.index()]);
+    }
+
+    int[] tileDataOffsets() {
+        int[] relative = new int[offsets.length];
+        for (int tile = 0; tile < offsets.length; tile++) {
+            relative[tile] = offsets[tile] - offsets[0];
+        }
+        return relative;
+    }
+
+    byte[] tileDataImage(int length) {
+        return read(offsets[0], length);
+    }
+
+    byte[] bitmaskImage() {
+        return read(startOfTileBitmask, Tile.TILE_COUNT * BITMASK_LENGTH);
+    }
+
+    private byte[] read(int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer source = rom.duplicate();
+        source.position(position);
+        source.get(bytes);
+        return bytes;
+    }
+
+    List<Tile> decodeAll(TileStore store) {
+        return IntStream.range(0, Tile.TILE_COUNT)
+                .parallel()
+                .mapToObj(tile -> decode(tile, store))
+                .collect(toList());
+    }
+}
@@ -0,0 +1,114 @@
+package com.smallhacker.hylianfont.font;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+public final class TileRasterCache<T> {
+    private final BiFunction<Tile, Rendering, T> rasterizer;
+    private final boolean paletteDependent;
+    private final long maxPixels;
+    private final LinkedHashMap<Key, T> rasters = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long pixels;
+    private long hits;
+    private long misses;
+
+    private TileRasterCache(BiFunction<Tile, Rendering, T> rasterizer, boolean paletteDependent, long maxPixels) {
+        this.rasterizer = rasterizer;
+        this.paletteDependent = paletteDependent;
+        this.maxPixels = maxPixels;
+    }
+
+    public static TileRasterCache<int[]> argb(long maxPixels) {
+        return new TileRasterCache<>(Tile::rasterizeArgb, true, maxPixels);
+    }
+
+    public static TileRasterCache<byte[]> indexed(long maxPixels) {
+        return new TileRasterCache<>(Tile::rasterizeIndices, false, maxPixels);
+    }
+
+    synchronized T get(Tile tile, Rendering rendering) {
+        Key key = new Key(tile, rendering, paletteDependent ? rendering.getPalette() : null);
+        T raster = rasters.get(key);
+        if (raster != null) {
+            hits++;
+            return raster;
+        }
+
+        misses++;
+        raster = rasterizer.apply(tile, rendering);
+        rasters.put(key, raster);
+        pixels += key.pixels();
+        evict();
+        return raster;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, T>> iterator = rasters.entrySet().iterator();
+        while (pixels > maxPixels && iterator.hasNext()) {
+            pixels -= iterator.next().getKey().pixels();
+            iterator.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        rasters.clear();
+        pixels = 0;
+    }
+
+    public synchronized int size() {
+        return rasters.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static final class Key {
+        private final int index;
+        private final long version;
+        private final Rendering.Mode mode;
+        private final Palette palette;
+        private final int scale;
+
+        private Key(Tile tile, Rendering rendering, Palette palette) {
+            this.index = tile.index();
+            this.version = tile.version();
+            this.mode = rendering.getMode();
+            this.palette = palette;
+            this.scale = rendering.getScale();
+        }
+
+        private long pixels() {
+            return (long) mode.getWidth() * mode.getHeight() * scale * scale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return index == key.index
+                    && version == key.version
+                    && scale == key.scale
+                    && mode == key.mode
+                    && palette == key.palette;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(index, version, mode, palette, scale);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.smallhacker.hylianfont.font;
+
+import java.util.BitSet;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.IntStream;
+
+public final class TileSheet {
+    public static final int WIDTH_IN_TILES = 32;
+    public static final int HEIGHT_IN_TILES = Tile.TILE_COUNT / WIDTH_IN_TILES;
+
+    private TileSheet() {
+    }
+
+    public static int getWidth(Rendering rendering) {
+        return rendering.getScaledWidth() * WIDTH_IN_TILES;
+    }
+
+    public static int getHeight(Rendering rendering) {
+        return rendering.getScaledHeight() * HEIGHT_IN_TILES;
+    }
+
+    public static int cellX(int index, Rendering rendering) {
+        return (index % WIDTH_IN_TILES) * rendering.getScaledWidth();
+    }
+
+    public static int cellY(int index, Rendering rendering) {
+        return (index / WIDTH_IN_TILES) * rendering.getScaledHeight();
+    }
+
+    public static Framebuffer render(FontSnapshot snapshot, Rendering rendering) {
+        Framebuffer sheet = new Framebuffer(getWidth(rendering), getHeight(rendering));
+        for (int i = 0; i < snapshot.size(); i++) {
+            snapshot.getTile(i).render(sheet, cellX(i, rendering), cellY(i, rendering), rendering);
+        }
+        return sheet;
+    }
+
+    public static Changes quantize(Framebuffer sheet, FontSnapshot snapshot, Rendering rendering) {
+        checkSize(sheet.getWidth(), sheet.getHeight(), rendering);
+        Palette palette = rendering.getPalette();
+        if (!hasUniqueColors(palette)) {
+            throw new MessageException(
+                    String.format(
+                            "The palette \"%s\" uses the same colour more than once, so colours cannot be told apart. "
+                                    + "Import a sheet exported with this palette, or pick another palette.",
+                            palette.getName()
+                    )
+            );
+        }
+        return quantize(snapshot, rendering, (x, y) -> nearest(palette, sheet.getArgb(x, y)));
+    }
+
+    public static Changes quantize(IndexedRaster sheet, FontSnapshot snapshot, Rendering rendering) {
+        checkSize(sheet.getWidth(), sheet.getHeight(), rendering);
+        byte[] indices = sheet.getIndices();
+        return quantize(snapshot, rendering, (x, y) -> indices[x + y * sheet.getWidth()]);
+    }
+
+    private static void checkSize(int width, int height, Rendering rendering) {
+        if (width != getWidth(rendering) || height != getHeight(rendering)) {
+            throw new MessageException(
+                    String.format(
+                            "Sheet is %sx%s, expected %sx%s.",
+                            width, height, getWidth(rendering), getHeight(rendering)
+                    )
+            );
+        }
+    }
+
+    private static Changes quantize(FontSnapshot snapshot, Rendering rendering, IntBinaryOperator colorAt) {
+        byte[][] colors = new byte[snapshot.size()][];
+        IntStream.range(0, snapshot.size())
+                .parallel()
+                .forEach(i -> {
+                    byte[] tileColors = sample(i, rendering, colorAt);
+                    if (differs(snapshot.getTile(i), tileColors, rendering)) {
+                        colors[i] = tileColors;
+                    }
+                });
+        return new Changes(colors, rendering);
+    }
+
+    private static byte[] sample(int index, Rendering rendering, IntBinaryOperator colorAt) {
+        int scale = rendering.getScale();
+        int baseX = cellX(index, rendering) + scale / 2;
+        int baseY = cellY(index, rendering) + scale / 2;
+
+        byte[] colors = new byte[rendering.getWidth() * rendering.getHeight()];
+        for (int y = 0; y < rendering.getHeight(); y++) {
+            for (int x = 0; x < rendering.getWidth(); x++) {
+                colors[x + y * rendering.getWidth()] = (byte) colorAt.applyAsInt(baseX + x * scale, baseY + y * scale);
+            }
+        }
+        return colors;
+    }
+
+    private static boolean differs(Tile tile, byte[] colors, Rendering rendering) {
+        for (int y = 0; y < rendering.getHeight(); y++) {
+            for (int x = 0; x < rendering.getWidth(); x++) {
+                if (tile.get(rendering.getOriginX() + x, y) != colors[x + y * rendering.getWidth()]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static boolean hasUniqueColors(Palette palette) {
+        for (int i = 0; i < palette.getBpp(); i++) {
+            for (int j = i + 1; j < palette.getBpp(); j++) {
+                if ((palette.getArgb(i) & 0xFFFFFF) == (palette.getArgb(j) & 0xFFFFFF)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    static int nearest(Palette palette, int argb) {
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < palette.getBpp(); i++) {
+            int candidate = palette.getArgb(i);
+            int dr = ((argb >> 16) & 0xFF) - ((candidate >> 16) & 0xFF);
+            int dg = ((argb >> 8) & 0xFF) - ((candidate >> 8) & 0xFF);
+            int db = (argb & 0xFF) - (candidate & 0xFF);
+            int distance = dr * dr + dg * dg + db * db;
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    public static final class Changes {
+        private final byte[][] colors;
+        private final Rendering rendering;
+
+        private Changes(byte[][] colors, Rendering rendering) {
+            this.colors = colors;
+            this.rendering = rendering;
+        }
+
+        public BitSet getChangedTiles() {
+            BitSet changed = new BitSet(colors.length);
+            for (int i = 0; i < colors.length; i++) {
+                if (colors[i] != null) {
+                    changed.set(i);
+                }
+            }
+            return changed;
+        }
+
+        public BitSet applyTo(Font font) {
+            BitSet changed = new BitSet(colors.length);
+            for (int i = 0; i < colors.length; i++) {
+                if (colors[i] == null) {
+                    continue;
+                }
+                Tile tile = font.getTile(i);
+                for (int y = 0; y < rendering.getHeight(); y++) {
+                    for (int x = 0; x < rendering.getWidth(); x++) {
+                        if (tile.set(rendering.getOriginX() + x, y, colors[i][x + y * rendering.getWidth()])) {
+                            changed.set(i);
+                        }
+                    }
+                }
+            }
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.smallhacker.hylianfont.font;
+
+import java.util.BitSet;
+
+final class TileStore {
+    static final int WORDS_PER_TILE = 8;
+    static final int PLANE_BITS_PER_TILE = 44;
+
+    final long[] planes;
+    final byte[] planeBits;
+
+    TileStore(int tileCount) {
+        this.planes = new long[tileCount * WORDS_PER_TILE];
+        this.planeBits = new byte[tileCount * PLANE_BITS_PER_TILE];
+    }
+
+    int tileCount() {
+        return planes.length / WORDS_PER_TILE;
+    }
+
+    BitSet differingTiles(TileStore other) {
+        int tileCount = Math.min(tileCount(), other.tileCount());
+        BitSet differing = new BitSet(tileCount);
+        for (int i = 0; i < tileCount * WORDS_PER_TILE; i++) {
+            if (planes[i] != other.planes[i]) {
+                differing.set(i / WORDS_PER_TILE);
+            }
+        }
+        return differing;
+    }
+}
@@ -0,0 +1,194 @@
+package com.smallhacker.hylianfont.font;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TileTest {
+    private static final int WIDTH = 11;
+    private static final int HEIGHT = 16;
+    private static final int SAMPLES = 64;
+
+    private List<Tile> tiles;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        tiles = Tile.load(new byte[0x80000], Font.START_OF_TILE_DATA, Font.START_OF_TILE_BITMASK);
+        random = new Random(0x5F1A_2018L);
+    }
+
+    @Test
+    public void flipHorizontally() {
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            Tile tile = randomTile(sample);
+            byte[][] expected = new byte[HEIGHT][WIDTH];
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    expected[y][x] = tile.get(WIDTH - 1 - x, y);
+                }
+            }
+            tile.flipHorizontally();
+            assertPixels(expected, tile);
+        }
+    }
+
+    @Test
+    public void flipVertically() {
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            Tile tile = randomTile(sample);
+            byte[][] expected = new byte[HEIGHT][WIDTH];
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    expected[y][x] = tile.get(x, HEIGHT - 1 - y);
+                }
+            }
+            tile.flipVertically();
+            assertPixels(expected, tile);
+        }
+    }
+
+    @Test
+    public void shift() {
+        for (int dy = -HEIGHT - 1; dy <= HEIGHT + 1; dy++) {
+            for (int dx = -WIDTH - 1; dx <= WIDTH + 1; dx++) {
+                Tile tile = randomTile(0);
+                byte[][] expected = new byte[HEIGHT][WIDTH];
+                for (int y = 0; y < HEIGHT; y++) {
+                    for (int x = 0; x < WIDTH; x++) {
+                        int sourceX = x - dx;
+                        int sourceY = y - dy;
+                        if (sourceX >= 0 && sourceX < WIDTH && sourceY >= 0 && sourceY < HEIGHT) {
+                            expected[y][x] = tile.get(sourceX, sourceY);
+                        }
+                    }
+                }
+                tile.shift(dx, dy);
+                assertPixels("shift(" + dx + ", " + dy + ")", expected, tile);
+            }
+        }
+    }
+
+    @Test
+    public void count() {
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            Tile tile = randomTile(sample);
+            int[] expected = new int[4];
+            for (int i = 0; i < WIDTH * HEIGHT; i++) {
+                expected[tile.get(i)]++;
+            }
+            for (byte color = 0; color < 4; color++) {
+                assertEquals(expected[color], tile.count(color));
+            }
+        }
+    }
+
+    @Test
+    public void copyAndCompare() {
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            Tile source = randomTile(sample);
+            Tile target = randomTile(sample + 1);
+            target.copy(source);
+            assertTrue(target.contentEquals(source));
+            assertEquals(source.contentHash(), target.contentHash());
+            assertTrue(source.snapshot().contentEquals(source));
+
+            int index = random.nextInt(WIDTH * HEIGHT);
+            target.set(index, (byte) ((target.get(index) + 1) % 4));
+            assertFalse(target.contentEquals(source));
+        }
+    }
+
+    @Test
+    public void pack() {
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            Tile tile = randomTile(sample);
+            assertArrayEquals(naivePack(tile), tile.pack());
+        }
+    }
+
+    @Test
+    public void unpack() {
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            Tile tile = randomTile(sample);
+            long[] planes = Tile.unpack(naivePack(tile));
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    int bit = (y % 4) * 16 + x;
+                    long low = (planes[y / 4] >>> bit) & 1;
+                    long high = (planes[4 + y / 4] >>> bit) & 1;
+                    assertEquals(tile.get(x, y), low | (high << 1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void encodedSize() {
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            Tile tile = randomTile(sample);
+            byte[] packed = naivePack(tile);
+            int expected = 0;
+            for (int i = 4; i < packed.length; i++) {
+                if (packed[i] != 0) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, tile.encodedSize());
+            assertEquals(expected, tile.encode().getTileData().length);
+        }
+    }
+
+    private Tile randomTile(int sample) {
+        Tile tile = tiles.get(sample % Tile.TILE_COUNT);
+        int density = random.nextInt(WIDTH * HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            byte color = random.nextInt(WIDTH * HEIGHT) < density ? (byte) (1 + random.nextInt(3)) : 0;
+            tile.set(i, color);
+        }
+        return tile;
+    }
+
+    private static byte[] naivePack(Tile tile) {
+        byte[] packed = new byte[44];
+        for (int row = 0; row < 22; row++) {
+            for (int bit = 0; bit < 8; bit++) {
+                byte color = tile.get(packedPixel(row, bit));
+                packed[row * 2] |= (color & 1) << (7 - bit);
+                packed[row * 2 + 1] |= ((color >> 1) & 1) << (7 - bit);
+            }
+        }
+        return packed;
+    }
+
+    private static int packedPixel(int row, int bit) {
+        if (row < 8) {
+            return Tile.coordsToIndex(bit, row);
+        } else if (row < 11) {
+            return Tile.coordsToIndex(row, bit);
+        } else if (row < 19) {
+            return Tile.coordsToIndex(bit, row - 3);
+        } else {
+            return Tile.coordsToIndex(row - 11, bit + 8);
+        }
+    }
+
+    private static void assertPixels(byte[][] expected, Tile tile) {
+        assertPixels("pixels", expected, tile);
+    }
+
+    private static void assertPixels(String message, byte[][] expected, Tile tile) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(message + " at (" + x + ", " + y + ")", expected[y][x], tile.get(x, y));
+            }
+        }
+    }
+}